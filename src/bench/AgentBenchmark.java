@@ -0,0 +1,113 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package bench;
+
+import blackjack.card.Card;
+import blackjack.card.Face;
+import blackjack.card.Suit;
+import genetic.agent.CompiledAgent;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.BasicStrategy;
+import org.openjdk.jmh.annotations.*;
+import util.Xoroshiro128;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the cost of accepting a card and of an agent's hit decision
+ *
+ * Interpreted weights are compared against the same weights compiled into a policy,
+ * see PolicyCompiler. Random weights are all stochastic, as an evolved champion's are,
+ * so CompiledAgent interprets them. The basic strategy's are all deterministic and
+ * compile into constant decisions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AgentBenchmark
+{
+    @Param({ "random", "basic" }) private String weights;
+
+    private ConcreteAgent agent;
+    private CompiledAgent compiled;
+    private final Card two = Card.fromCode(Card.codeOf(Face.TWO, Suit.SPADES));
+    private final Card ten = Card.fromCode(Card.codeOf(Face.TEN, Suit.SPADES));
+
+    @Setup public void setup()
+    {
+        agent = new ConcreteAgent(BenchmarkRunner.SEED);
+        agent.randomizeWeights();
+        if (weights.equals("basic"))
+        {
+            final int[] optimal = BasicStrategy.solve(0).getWeights();
+            System.arraycopy(optimal, 0, agent.getWeights(), 0, optimal.length);
+        }
+        compiled = new CompiledAgent(agent.getWeights(), new Xoroshiro128(BenchmarkRunner.SEED));
+        agent.accept(ten);
+        agent.accept(two);
+        compiled.accept(ten);
+        compiled.accept(two);
+    }
+
+    /* Hand of 2-2, hit with twos and decided at each hard score from 4 to 20 */
+    @Benchmark public int acceptAndHit()
+    {
+        int hits = 0;
+        agent.reset(); // Discards the hand dealt for hit()
+        agent.accept(two);
+        agent.accept(two);
+        while (agent.getHardScore() <= 20)
+        {
+            if (agent.hit()) hits++;
+            agent.accept(two);
+        }
+        return hits;
+    }
+
+    /* Decision on the hard 12 of the setup, which hit() does not change */
+    @Benchmark public boolean hit()
+    {
+        return agent.hit();
+    }
+
+    /* As acceptAndHit(), deciding through the compiled policy */
+    @Benchmark public int compiledAcceptAndHit()
+    {
+        int hits = 0;
+        compiled.reset(); // Discards the hand dealt for compiledHit()
+        compiled.accept(two);
+        compiled.accept(two);
+        while (compiled.getHardScore() <= 20)
+        {
+            if (compiled.hit()) hits++;
+            compiled.accept(two);
+        }
+        return hits;
+    }
+
+    /* As hit(), deciding through the compiled policy */
+    @Benchmark public boolean compiledHit()
+    {
+        return compiled.hit();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmark suite with GC allocation profiling enabled
+ *
+ * Results are written as JSON, so a run can be kept as a baseline and compared against,
+ * see res/bench-baseline.json. The `bench` Maven profile builds & runs the suite.
+ * Usage: BenchmarkRunner [results file] [benchmark regex]
+ */
+public final class BenchmarkRunner
+{
+    /* Table configuration shared by all benchmarks, matching the training runs */
+    static final long SEED = 5213821584128L;
+    static final int SHOE_SIZE = 8;
+    static final float PENETRATION = 0.35f;
+
+    private static final String DEFAULT_RESULTS = "bench-results.json";
+
+    private BenchmarkRunner() { }
+
+    public static void main(final String[] args) throws RunnerException
+    {
+        final Options opt = new OptionsBuilder()
+                .include(args.length > 1 ? args[1] : BenchmarkRunner.class.getPackageName() + ".*Benchmark")
+                .addProfiler(GCProfiler.class) // Reports bytes allocated per operation
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 0 ? args[0] : DEFAULT_RESULTS)
+                .build();
+        new Runner(opt).run();
+    }
+}
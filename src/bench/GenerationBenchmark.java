@@ -0,0 +1,70 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package bench;
+
+import blackjack.HeadsUpBlackjack;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.ParallelFitness;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the evaluation step of one generation, with a reduced number of rounds per agent
+ *
+ * Each invocation evaluates the entire population, exactly as a generation would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GenerationBenchmark
+{
+    private static final int NUM_AGENTS = 1000, BJ_ROUNDS_PER_AGENT = 1000;
+
+    private List<ConcreteAgent> agents;
+    private ParallelFitness<ConcreteAgent> fitness;
+    private int generation = 0;
+
+    @Setup public void setup()
+    {
+        final Random generator = new Random(BenchmarkRunner.SEED);
+        agents = new ArrayList<>(NUM_AGENTS);
+        for (int i = 0; i < NUM_AGENTS; i++)
+        {
+            final ConcreteAgent ca = new ConcreteAgent(generator.nextLong());
+            ca.randomizeWeights();
+            agents.add(ca);
+        }
+        fitness = new ParallelFitness<>((agent, seed) -> new HeadsUpBlackjack(agent,
+                BenchmarkRunner.SHOE_SIZE, seed, BenchmarkRunner.PENETRATION)
+                .playRounds(BJ_ROUNDS_PER_AGENT).cost(), BenchmarkRunner.SEED);
+    }
+
+    @Benchmark public double[] evaluateGeneration()
+    {
+        return fitness.evaluate(agents, generation++);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package bench;
+
+import blackjack.BJEventTranslator;
+import blackjack.Blackjack;
+import blackjack.BlackjackWatchable;
+import blackjack.HeadsUpBlackjack;
+import blackjack.card.Card;
+import blackjack.player.Dealer;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.BatchedSimulation;
+import io.HandHistoryWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures rounds per second of each Blackjack table
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundBenchmark
+{
+    /* Most Blackjack tables seat up to 7 players */
+    private static final int TABLE_SEATS = 7;
+    private static final int BATCH_LANES = 64;
+
+    private Blackjack headsUp, fullTable, translated, recorded;
+    private HandHistoryWriter history;
+    private Path historyFile;
+    private HeadsUpBlackjack engine;
+    private BatchedSimulation batch;
+    private Map<Player, Integer> results;
+
+    /* Consumes events without any output, isolating the translator's own cost */
+    private static final BlackjackWatchable silent = new BlackjackWatchable()
+    {
+        @Override public void roundStart() { }
+        @Override public void cardDealt(final Player p, final Card c) { }
+        @Override public void dealerHideCard(final Dealer d) { }
+        @Override public void dealerRevealCard(final Dealer d, final Card c, final boolean afterRound) { }
+        @Override public void playerBust(final Player p) { }
+        @Override public void playerBlackjack(final Player p) { }
+        @Override public void reset(final Map<Player, Integer> results) { }
+    };
+
+    @Setup public void setup() throws IOException
+    {
+        headsUp = new Blackjack(BenchmarkRunner.SHOE_SIZE, BenchmarkRunner.SEED, BenchmarkRunner.PENETRATION);
+        headsUp.dealIn(agent(0));
+        results = headsUp.getResults();
+
+        fullTable = new Blackjack(BenchmarkRunner.SHOE_SIZE, BenchmarkRunner.SEED, BenchmarkRunner.PENETRATION);
+        for (int i = 0; i < TABLE_SEATS; i++)
+            fullTable.dealIn(agent(i));
+
+        translated = new BJEventTranslator(silent,
+                BenchmarkRunner.SHOE_SIZE, BenchmarkRunner.SEED, BenchmarkRunner.PENETRATION);
+        translated.dealIn(agent(0));
+
+        engine = new HeadsUpBlackjack(agent(0),
+                BenchmarkRunner.SHOE_SIZE, BenchmarkRunner.SEED, BenchmarkRunner.PENETRATION);
+
+        batch = BatchedSimulation.scalar(BATCH_LANES, BenchmarkRunner.SHOE_SIZE, BenchmarkRunner.PENETRATION);
+        for (int lane = 0; lane < BATCH_LANES; lane++)
+            batch.seat(lane, agent(lane).getWeights(), BenchmarkRunner.SEED + lane, BenchmarkRunner.SEED - lane);
+    }
+
+    /* A fresh log each iteration, as recording appends ~50 MB/s which would otherwise accumulate for the whole trial */
+    @Setup(Level.Iteration) public void openHistory() throws IOException
+    {
+        historyFile = Files.createTempFile("hand-history", ".bin");
+        history = new HandHistoryWriter(historyFile);
+        recorded = new BJEventTranslator(history,
+                BenchmarkRunner.SHOE_SIZE, BenchmarkRunner.SEED, BenchmarkRunner.PENETRATION);
+        recorded.dealIn(agent(0));
+    }
+
+    @TearDown(Level.Iteration) public void closeHistory() throws IOException
+    {
+        history.close();
+        Files.delete(historyFile);
+    }
+
+    private static ConcreteAgent agent(final int seat)
+    {
+        final ConcreteAgent ca = new ConcreteAgent(BenchmarkRunner.SEED + seat);
+        ca.randomizeWeights();
+        return ca;
+    }
+
+    @Benchmark public Map<Player, Integer> headsUp()
+    {
+        headsUp.playRound();
+        return results;
+    }
+
+    @Benchmark @OperationsPerInvocation(TABLE_SEATS) public Map<Player, Integer> fullTable()
+    {
+        fullTable.playRound();
+        return fullTable.getResults();
+    }
+
+    @Benchmark public Map<Player, Integer> eventTranslator()
+    {
+        translated.playRound();
+        return translated.getResults();
+    }
+
+    @Benchmark public Map<Player, Integer> recordedTranslator()
+    {
+        recorded.playRound();
+        return recorded.getResults();
+    }
+
+    @Benchmark public int headsUpEngine()
+    {
+        return engine.playRound();
+    }
+
+    @Benchmark @OperationsPerInvocation(BATCH_LANES) public BatchedSimulation batched()
+    {
+        batch.playRounds(1);
+        return batch;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package bench;
+
+import blackjack.card.Card;
+import blackjack.card.CompactShoe;
+import blackjack.card.Shoe;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures deals per second of the object & primitive shoes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShoeBenchmark
+{
+    @Param({ "1", "8" }) private int decks;
+
+    private Shoe shoe;
+    private CompactShoe compactShoe;
+
+    @Setup public void setup()
+    {
+        shoe = new Shoe(decks, BenchmarkRunner.SEED);
+        compactShoe = new CompactShoe(decks, BenchmarkRunner.SEED);
+    }
+
+    @Benchmark public Card deal()
+    {
+        if (shoe.penetration() >= BenchmarkRunner.PENETRATION) shoe.shuffle();
+        return shoe.deal();
+    }
+
+    @Benchmark public int dealCode()
+    {
+        if (compactShoe.penetration() >= BenchmarkRunner.PENETRATION) compactShoe.shuffle();
+        return compactShoe.dealCode();
+    }
+}
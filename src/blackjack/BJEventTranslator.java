@@ -74,6 +74,7 @@ public class BJEventTranslator extends Blackjack
 
     @Override void dealTo(Player player, Card card)
     {
+        player.trackField(); // Event handlers may inspect the player's field
         super.dealTo(player, card);
         cardsDealt++;
 
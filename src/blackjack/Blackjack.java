@@ -44,6 +44,8 @@ public class Blackjack
     private final float penetration;
     private final Player dealer = new Dealer();
     private final Map<Player, Integer> players, players_ro;
+    /* Players in seating order, iterated each round without allocating iterators */
+    private Player[] seats = new Player[0];
 
     /* Percentage of the deck dealt out such that a shuffle should occur */
     private static final float DEFAULT_PENETRATION = 0.5f;
@@ -85,6 +87,7 @@ public class Blackjack
         this.players.putAll(Arrays.stream(requireNonNull(players))
                 .collect(Collectors.toMap(
                         Function.identity(), v -> RESULT_PUSH)));
+        seats = this.players.keySet().toArray(new Player[0]);
     }
 
     /**
@@ -99,29 +102,31 @@ public class Blackjack
         if (players.isEmpty()) throw new IllegalStateException("Cannot play round without any player participants");
         // Card deal order is always one card to each player, one to dealer, and so on.
         // This order is imperative for subclasses which track the game event-by-event.
+        // Rounds are played billions of times during training, so avoid streams, lambdas & iterators here.
         for (int i = 0; i < 2; i++)
         {
-            players.keySet().forEach(p -> dealTo(p, shoe.deal()));
+            for (final Player p : seats)
+                dealTo(p, shoe.deal());
             dealTo(dealer, shoe.deal());
         }
 
-        //noinspection ReplaceInefficientStreamCount
-        final boolean fullRound = players.keySet().stream()
-                .filter(this::playerTurn)
-                .count() > 0;
+        boolean fullRound = false; // Every player must take their turn, do not short-circuit
+        for (final Player p : seats)
+            fullRound |= playerTurn(p);
 
         if (fullRound) // Only proceed with dealer's turn if a player didn't bust
         {
             final boolean dealerBust = !playerTurn(dealer);
-            for (final Map.Entry<Player, Integer> e : players.entrySet())
+            for (final Player player : seats)
             {
-                final Player player = e.getKey();
-                if (player.hasBusted()) e.setValue(RESULT_LOSS);
-                else if (dealerBust) e.setValue(RESULT_WIN);
-                else e.setValue(Integer.compare(player.getSoftScore(), dealer.getSoftScore()));
+                // Result values are within the Integer cache, so boxing does not allocate
+                if (player.hasBusted()) players.put(player, RESULT_LOSS);
+                else if (dealerBust) players.put(player, RESULT_WIN);
+                else players.put(player, Integer.compare(player.getSoftScore(), dealer.getSoftScore()));
             }
         }
-        else players.entrySet().forEach(e -> e.setValue(RESULT_LOSS));
+        else for (final Player player : seats)
+            players.put(player, RESULT_LOSS);
 
         // If the specified percentage of the deck has been penetrated, perform a shuffle
         if (shoe.penetration() >= penetration) shoe.shuffle();
@@ -175,7 +180,8 @@ public class Blackjack
     public void reset()
     {
         dealer.reset();
-        players.keySet().forEach(Player::reset);
+        for (final Player p : seats)
+            p.reset();
     }
 
     /**
@@ -0,0 +1,172 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package blackjack;
+
+import blackjack.card.Card;
+import blackjack.card.CardSource;
+import blackjack.card.CompactShoe;
+import blackjack.player.HandState;
+import blackjack.player.Player;
+
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Defines a heads-up game of Blackjack, one player against the dealer
+ *
+ * Plays by the same rules and deals in the same order as Blackjack, therefore
+ * the same player, shoe size, seed and penetration produce the same results.
+ * The dealer's hand is tracked as a HandState and results are returned as
+ * primitives, so a round allocates nothing and requires no result map.
+ */
+public class HeadsUpBlackjack
+{
+    private final CardSource shoe;
+    private final float penetration;
+    private final Player player;
+
+    /* Round result constants depending on the end state of the Blackjack round  */
+    public static final int RESULT_WIN = 1, RESULT_LOSS = -1, RESULT_PUSH = 0;
+
+    /* A dealer must hit if their score is less than 17 */
+    private static final int MINIMUM_DEALER_SCORE = 17;
+
+    /**
+     * Constructs a heads-up Blackjack table instance
+     *
+     * @param player Player to be seated against the dealer
+     * @param shoeSize Number of decks to be combined into a shoe
+     * @param seed Random seed sequence
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     */
+    public HeadsUpBlackjack(final Player player, final int shoeSize, final long seed, final float penetration)
+    {
+        this(player, newShoe(shoeSize, seed), penetration);
+    }
+
+    /**
+     * Constructs a heads-up Blackjack table instance, dealing from the specified source
+     *
+     * @param player Player to be seated against the dealer
+     * @param shoe Source of the cards to be dealt, ex. a DealTape shared by many tables
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     */
+    public HeadsUpBlackjack(final Player player, final CardSource shoe, final float penetration)
+    {
+        this.player = requireNonNull(player);
+        this.shoe = requireNonNull(shoe);
+        this.penetration = validateDomain(penetration, 0.0f, 1.0f);
+    }
+
+    /**
+     * Plays a round of Blackjack between the player and the dealer
+     *
+     * See Blackjack#playRound for the rule-set in use.
+     *
+     * @return Result of the round { 1: win, -1: loss, 0: push }
+     */
+    public int playRound()
+    {
+        // Card deal order must match Blackjack: player, dealer, player, dealer.
+        player.accept(Card.fromCode(shoe.dealCode()));
+        int dealer = HandState.next(HandState.EMPTY, Card.faceValue(shoe.dealDealerCode()));
+        player.accept(Card.fromCode(shoe.dealCode()));
+        dealer = HandState.next(dealer, Card.faceValue(shoe.dealDealerCode()));
+
+        final int result;
+        if (playerTurn())
+        {
+            /* Dealer hits until reaching 17, which also covers standing on Blackjack */
+            int dealerSoft = HandState.softScore(dealer);
+            while (dealerSoft < MINIMUM_DEALER_SCORE)
+            {
+                dealer = HandState.next(dealer, Card.faceValue(shoe.dealDealerCode()));
+                dealerSoft = HandState.softScore(dealer);
+            }
+            if (HandState.isBust(dealer)) result = RESULT_WIN;
+            else result = Integer.compare(player.getSoftScore(), dealerSoft);
+        }
+        else result = RESULT_LOSS;
+
+        // If the specified percentage of the deck has been penetrated, perform a shuffle
+        shoe.endRound();
+        if (shoe.penetration() >= penetration) shoe.shuffle();
+        player.reset();
+        return result;
+    }
+
+    /**
+     * Plays several rounds of Blackjack, tallying their results
+     *
+     * @param rounds Number of rounds to play
+     * @param tally Tally to accumulate round results into
+     * @return The specified tally
+     */
+    public RoundTally playRounds(final int rounds, final RoundTally tally)
+    {
+        requireNonNull(tally);
+        for (int i = 0; i < rounds; i++)
+            tally.record(playRound());
+        return tally;
+    }
+
+    /**
+     * @param rounds Number of rounds to play
+     * @return Tally of the rounds' results
+     */
+    public RoundTally playRounds(final int rounds)
+    {
+        return playRounds(rounds, new RoundTally());
+    }
+
+    /**
+     * @return Player seated against the dealer
+     */
+    public Player getPlayer()
+    {
+        return player;
+    }
+
+    /**
+     * Performs the player's turn, see Blackjack#playerTurn
+     *
+     * @return false if the player busted
+     */
+    private boolean playerTurn()
+    {
+        if (player.hasBlackjack()) return true; // Blackjack on first two cards
+        do
+        {
+            if (player.hit())
+                player.accept(Card.fromCode(shoe.dealCode()));
+            else break;
+            if (player.hasBusted()) return false;
+        } while (!player.hasBlackjack());
+        return true;
+    }
+
+    private static CompactShoe newShoe(final int shoeSize, final long seed)
+    {
+        if (shoeSize <= 0) throw new IllegalArgumentException("Shoe size must be positive and non-zero");
+        return new CompactShoe(shoeSize, seed);
+    }
+}
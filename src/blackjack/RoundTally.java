@@ -0,0 +1,101 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package blackjack;
+
+/**
+ * Defines a tally of Blackjack round results
+ *
+ * Tallies are accumulated by HeadsUpBlackjack without boxing each round result.
+ */
+public class RoundTally
+{
+    private long wins = 0, pushes = 0, losses = 0;
+
+    /**
+     * Records the result of a round
+     *
+     * @param result Result of the round { 1: win, -1: loss, 0: push }
+     */
+    public void record(final int result)
+    {
+        if (result > 0) wins++;
+        else if (result < 0) losses++;
+        else pushes++;
+    }
+
+    /**
+     * @return Number of rounds won
+     */
+    public long getWins()
+    {
+        return wins;
+    }
+
+    /**
+     * @return Number of rounds pushed with the dealer
+     */
+    public long getPushes()
+    {
+        return pushes;
+    }
+
+    /**
+     * @return Number of rounds lost
+     */
+    public long getLosses()
+    {
+        return losses;
+    }
+
+    /**
+     * @return Number of rounds recorded
+     */
+    public long getRounds()
+    {
+        return wins + pushes + losses;
+    }
+
+    /**
+     * Calculates the cost of all recorded rounds
+     *
+     * Results are shifted into win: 0, push: 1, loss: 2.
+     *
+     * @return Total cost of the recorded rounds
+     */
+    public double cost()
+    {
+        return pushes + 2.0 * losses;
+    }
+
+    /**
+     * Resets the tally
+     */
+    public void reset()
+    {
+        wins = pushes = losses = 0;
+    }
+
+    /**
+     * @return String representation of the tally
+     */
+    @Override public String toString()
+    {
+        return String.format("Win: %d   Loss: %d   Push: %d", wins, losses, pushes);
+    }
+}
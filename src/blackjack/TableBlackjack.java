@@ -0,0 +1,187 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package blackjack;
+
+import blackjack.card.Card;
+import blackjack.card.CompactShoe;
+import blackjack.player.HandState;
+import blackjack.player.Player;
+
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Defines a game of Blackjack between the dealer and several players sharing one table
+ *
+ * Plays by the same rules as HeadsUpBlackjack, with every player dealt in seat order:
+ * each player, dealer, each player, dealer. The dealer's hand, the shoe and the shuffle
+ * check are shared by every seat, so dealer work per player-round falls by the number of seats.
+ *
+ * Seating rotates by one seat every round, therefore over any multiple of that many rounds
+ * every player has occupied every seat equally often. Results are reported by player, not seat.
+ */
+public class TableBlackjack
+{
+    private final CompactShoe shoe;
+    private final float penetration;
+    private final Player[] players;
+    private final boolean[] standing;
+    private final int[] results;
+    private int rotation = 0;
+
+    /* Maximum number of seats at a table */
+    public static final int MAXIMUM_SEATS = 7;
+
+    /* A dealer must hit if their score is less than 17 */
+    private static final int MINIMUM_DEALER_SCORE = 17;
+
+    /**
+     * Constructs a multi-seat Blackjack table instance
+     *
+     * @param players Players to be seated at the table, at most seven
+     * @param shoeSize Number of decks to be combined into a shoe
+     * @param seed Random seed sequence
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     */
+    public TableBlackjack(final Player[] players, final int shoeSize, final long seed, final float penetration)
+    {
+        if (players.length == 0 || players.length > MAXIMUM_SEATS)
+            throw new IllegalArgumentException("A table seats between one and seven players");
+        if (shoeSize <= 0) throw new IllegalArgumentException("Shoe size must be positive and non-zero");
+        for (final Player p : players)
+            requireNonNull(p);
+        this.players = players.clone();
+        this.penetration = validateDomain(penetration, 0.0f, 1.0f);
+        shoe = new CompactShoe(shoeSize, seed);
+        standing = new boolean[players.length];
+        results = new int[players.length];
+    }
+
+    /**
+     * Plays a round of Blackjack between every seated player and the dealer
+     *
+     * See Blackjack#playRound for the rule-set in use.
+     *
+     * @return Result of the round for each player, by player index { 1: win, -1: loss, 0: push }.
+     *         The array is reused by the next round.
+     */
+    public int[] playRound()
+    {
+        final int seats = players.length;
+        for (int s = 0; s < seats; s++)
+            seat(s).accept(Card.fromCode(shoe.dealCode()));
+        int dealer = HandState.next(HandState.EMPTY, Card.faceValue(shoe.dealCode()));
+        for (int s = 0; s < seats; s++)
+            seat(s).accept(Card.fromCode(shoe.dealCode()));
+        dealer = HandState.next(dealer, Card.faceValue(shoe.dealCode()));
+
+        boolean anyStanding = false;
+        for (int s = 0; s < seats; s++)
+            anyStanding |= standing[s] = playerTurn(seat(s));
+
+        /* Dealer only plays if a player remains, hitting until 17 which also covers standing on Blackjack */
+        int dealerSoft = HandState.softScore(dealer);
+        while (anyStanding && dealerSoft < MINIMUM_DEALER_SCORE)
+        {
+            dealer = HandState.next(dealer, Card.faceValue(shoe.dealCode()));
+            dealerSoft = HandState.softScore(dealer);
+        }
+        for (int s = 0; s < seats; s++)
+        {
+            final Player p = seat(s);
+            final int result;
+            if (!standing[s]) result = HeadsUpBlackjack.RESULT_LOSS;
+            else if (HandState.isBust(dealer)) result = HeadsUpBlackjack.RESULT_WIN;
+            else result = Integer.compare(p.getSoftScore(), dealerSoft);
+            results[(s + rotation) % seats] = result;
+            p.reset();
+        }
+
+        // If the specified percentage of the deck has been penetrated, perform a shuffle
+        if (shoe.penetration() >= penetration) shoe.shuffle();
+        rotation = (rotation + 1) % seats;
+        return results;
+    }
+
+    /**
+     * Plays several rounds of Blackjack, tallying each player's results
+     *
+     * @param rounds Number of rounds to play
+     * @param tallies Tallies to accumulate round results into, by player index
+     * @return The specified tallies
+     */
+    public RoundTally[] playRounds(final int rounds, final RoundTally[] tallies)
+    {
+        if (tallies.length != players.length)
+            throw new IllegalArgumentException("A tally is needed for each player");
+        for (int i = 0; i < rounds; i++)
+        {
+            final int[] r = playRound();
+            for (int p = 0; p < r.length; p++)
+                tallies[p].record(r[p]);
+        }
+        return tallies;
+    }
+
+    /**
+     * @param rounds Number of rounds to play
+     * @return Tallies of the rounds' results, by player index
+     */
+    public RoundTally[] playRounds(final int rounds)
+    {
+        final RoundTally[] tallies = new RoundTally[players.length];
+        for (int p = 0; p < tallies.length; p++)
+            tallies[p] = new RoundTally();
+        return playRounds(rounds, tallies);
+    }
+
+    /**
+     * @return Number of seats at the table
+     */
+    public int getSeats()
+    {
+        return players.length;
+    }
+
+    /* Player occupying the seat during the current round */
+    private Player seat(final int seat)
+    {
+        return players[(seat + rotation) % players.length];
+    }
+
+    /**
+     * Performs the player's turn, see Blackjack#playerTurn
+     *
+     * @return false if the player busted
+     */
+    private boolean playerTurn(final Player player)
+    {
+        if (player.hasBlackjack()) return true; // Blackjack on first two cards
+        do
+        {
+            if (player.hit())
+                player.accept(Card.fromCode(shoe.dealCode()));
+            else break;
+            if (player.hasBusted()) return false;
+        } while (!player.hasBlackjack());
+        return true;
+    }
+}
@@ -52,6 +52,25 @@ public class Card
 
     private static final String CARD_FORMAT = "%c%s-%s"; // ex. J♣-🃋
 
+    /* Number of distinct cards in a standard deck, one card of each face and suit */
+    public static final int DISTINCT_CARDS = Face.values().length * Suit.values().length;
+
+    /* Flyweight table of every distinct card, indexed by card code */
+    private static final Card[] flyweights = new Card[DISTINCT_CARDS];
+    /* Relates card code to the point value of the card's face */
+    private static final byte[] faceValues = new byte[DISTINCT_CARDS];
+
+    static
+    {
+        for (final Suit s : Suit.values())
+            for (final Face f : Face.values())
+            {
+                final int code = codeOf(f, s);
+                flyweights[code] = new Card(f, s);
+                faceValues[code] = (byte)f.getValue();
+            }
+    }
+
     /**
      * @param face Face of the card
      * @param suit Suit of the card
@@ -78,6 +97,14 @@ public class Card
         return suit;
     }
 
+    /**
+     * @return Primitive code [0, 52) uniquely identifying the card's face and suit
+     */
+    public int getCode()
+    {
+        return codeOf(face, suit);
+    }
+
     /**
      * @return Unicode symbol of the card
      */
@@ -93,4 +120,42 @@ public class Card
     {
         return String.format(CARD_FORMAT, face.getLetter(), suit.getSymbol(), getCardSymbol());
     }
+
+    /**
+     * Encodes a face and suit into a primitive card code
+     *
+     * Codes are ordered by suit, then by face, matching the order of a freshly opened shoe.
+     *
+     * @param face Face of the card
+     * @param suit Suit of the card
+     * @return Primitive code [0, 52) of the card
+     */
+    public static int codeOf(final Face face, final Suit suit)
+    {
+        return suit.ordinal() * Face.values().length + face.ordinal();
+    }
+
+    /**
+     * Retrieves the shared card instance of the specified card code
+     *
+     * Cards are immutable, therefore one instance per distinct card is sufficient.
+     *
+     * @param code Primitive code of the card
+     * @return Flyweight card instance
+     */
+    public static Card fromCode(final int code)
+    {
+        return flyweights[code];
+    }
+
+    /**
+     * Retrieves the point value of the specified card code, without resolving a card instance
+     *
+     * @param code Primitive code of the card
+     * @return Value of the card's face
+     */
+    public static int faceValue(final int code)
+    {
+        return faceValues[code];
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package blackjack.card;
+
+/**
+ * Defines a source of primitive card codes at a Blackjack table
+ *
+ * See Card#codeOf(Face, Suit) for the encoding of card codes.
+ */
+public interface CardSource
+{
+    /**
+     * @return Code of the card which was dealt
+     */
+    int dealCode();
+
+    /**
+     * Deals a card to the dealer
+     *
+     * Sources may reserve separate cards for the dealer, otherwise this is the same as `dealCode`.
+     *
+     * @return Code of the card which was dealt
+     */
+    default int dealDealerCode()
+    {
+        return dealCode();
+    }
+
+    /**
+     * Indicates the round is over, and all of its cards have been dealt
+     */
+    default void endRound() { }
+
+    /**
+     * @return Percentage [0.0,1.0] of how many cards of the shoe have been dealt out
+     */
+    float penetration();
+
+    /**
+     * Shuffles the shoe
+     *
+     * A shoe should not be shuffled if dealt cards are still in-play
+     */
+    void shuffle();
+}
@@ -0,0 +1,129 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package blackjack.card;
+
+import util.Xoroshiro128;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Defines a shoe at a Blackjack table, stored as primitive card codes
+ *
+ * Behaves identically to Shoe for the same number of decks and seed,
+ * but the shoe is a single byte array rather than a list of card objects.
+ * Cards are dealt as primitive codes, see Card#codeOf(Face, Suit).
+ */
+public class CompactShoe implements CardSource
+{
+    private final byte[] shoe;
+    private final int size;
+    private final Random generator;
+
+    /* Indicates which cards of the shoe have already been dealt */
+    private int cardsDealt = 0;
+
+    /**
+     * @param decks Number of decks to be shuffled together
+     * @param seed Random seed sequence
+     */
+    public CompactShoe(final int decks, final long seed)
+    {
+        this(decks, new Xoroshiro128(seed));
+    }
+
+    /**
+     * @param decks Number of decks to be shuffled together
+     * @param generator Generator which determines the order cards are dealt in
+     */
+    public CompactShoe(final int decks, final Random generator)
+    {
+        if (decks < 1)
+            throw new IllegalArgumentException("Number of decks in the shoe must be possible and non-zero");
+        this.generator = requireNonNull(generator);
+        size = decks * Card.DISTINCT_CARDS;
+        shoe = new byte[size];
+        /* Cards must be laid out in the same order as Shoe, otherwise the same seed deals different cards */
+        int i = 0;
+        for (final Suit s : Suit.values())
+            for (final Face f : Face.values())
+                for (int d = 0; d < decks; d++)
+                    shoe[i++] = (byte)Card.codeOf(f, s);
+    }
+
+    /**
+     * Deals a random card from the deck, as a primitive card code
+     *
+     * Performs a fischer-yates shuffle step on every card dealt.
+     * After all cards are dealt, the shoe is effectively shuffled as-is.
+     *
+     * @return Code of the card which was dealt
+     */
+    @Override public int dealCode()
+    {
+        if (cardsDealt >= size)
+            throw new NoSuchElementException("Shoe is empty");
+        /* Randomly select a card from the unused partition of the shoe */
+        final int dealtIndex = cardsDealt + generator.nextInt(size - cardsDealt);
+        final byte dealt = shoe[dealtIndex];
+        /* Swap the dealt card with whatever card is at the bottom of the deck */
+        shoe[dealtIndex] = shoe[cardsDealt];
+        shoe[cardsDealt++] = dealt;
+        return dealt;
+    }
+
+    /**
+     * Deals a random card from the deck
+     *
+     * @return Flyweight instance of the card which was dealt
+     */
+    public Card deal()
+    {
+        return Card.fromCode(dealCode());
+    }
+
+    /**
+     * @return Percentage [0.0,1.0] of how many cards of the shoe have been dealt out
+     */
+    @Override public float penetration()
+    {
+        return cardsDealt / (float)size;
+    }
+
+    /**
+     * Shuffles the shoe
+     *
+     * A shoe should not be shuffled if dealt cards are still in-play
+     */
+    @Override public void shuffle()
+    {
+        cardsDealt = 0;
+    }
+
+    /**
+     * @return Maximum number of cards contained in the shoe
+     */
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package blackjack.card;
+
+import blackjack.player.HandState;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Defines a pre-generated sequence of shuffled shoes, shared by many tables
+ *
+ * The tape is generated once and is read-only thereafter, so any number of
+ * readers on any number of threads may deal from it. Every reader deals the
+ * same cards, at the same points of the game, regardless of the players' decisions.
+ *
+ * To keep readers aligned, each round reserves a block of cards from a cursor running through
+ * the shoe: the player is dealt from the front of the block, the dealer from the rest of it.
+ * A block is exactly long enough for the longest hands those cards allow, a player hitting until
+ * bust and a dealer hitting until 17, so it only depends on the cards, never on the players.
+ * Unused cards of the block are discarded (burned), and as they are never seen, they do not
+ * alter the odds of the game. Shuffle points are therefore fixed: once the penetration is
+ * reached, or the next block no longer fits, the reader moves on to the next shoe of the tape.
+ * The tape holds a fixed number of rounds, and is never replayed from the start.
+ */
+public class DealTape
+{
+    private final byte[] tape;
+    private final int shoeSize, rounds;
+
+    /* Index on the tape of the first card of each round */
+    private final int[] roundStart;
+    /* Cards reserved for the player & dealer of each round */
+    private final byte[] playerCards, dealerCards;
+    /* Index of the first round of each shoe, and of the shoe's first card on the tape */
+    private final int[] shoeRound, shoeStart;
+
+    private static final int MINIMUM_DEALER_SCORE = 17;
+
+    /**
+     * @param decks Number of decks to be shuffled together into each shoe
+     * @param rounds Number of rounds to be recorded on the tape
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     *                    Tables dealing from the tape must use the same penetration.
+     * @param seed Random seed sequence
+     */
+    public DealTape(final int decks, final int rounds, final float penetration, final long seed)
+    {
+        if (rounds < 1) throw new IllegalArgumentException("Number of rounds on the tape must be positive and non-zero");
+        validateDomain(penetration, 0.0f, 1.0f);
+        final CompactShoe shoe = new CompactShoe(decks, seed);
+        final byte[] cards = new byte[shoe.size()];
+        this.rounds = rounds;
+        shoeSize = cards.length;
+        roundStart = new int[rounds];
+        playerCards = new byte[rounds];
+        dealerCards = new byte[rounds];
+
+        byte[] t = new byte[shoeSize];
+        int[] sr = new int[16], ss = new int[16];
+        int length = 0, shoes = 0, r = 0;
+        while (r < rounds)
+        {
+            /* Dealing out an entire shoe records one complete shuffle of it */
+            shoe.shuffle();
+            for (int i = 0; i < shoeSize; i++)
+                cards[i] = (byte)shoe.dealCode();
+            if (shoes == sr.length)
+            {
+                sr = Arrays.copyOf(sr, shoes * 2);
+                ss = Arrays.copyOf(ss, shoes * 2);
+            }
+            sr[shoes] = r;
+            ss[shoes++] = length;
+
+            /* Rounds are allocated from the cursor until the shoe is cut or exhausted */
+            int cursor = 0;
+            while (r < rounds)
+            {
+                final int player = playerReserve(cards, cursor);
+                final int dealer = player < 0 ? -1 : dealerReserve(cards, cursor + player);
+                if (dealer < 0) break;
+                roundStart[r] = length + cursor;
+                playerCards[r] = (byte)player;
+                dealerCards[r++] = (byte)dealer;
+                cursor += player + dealer;
+                if (cursor / (float)shoeSize >= penetration) break;
+            }
+            /* Only the cards of recorded rounds are kept, the remainder of the shoe is never dealt */
+            if (length + cursor > t.length) t = Arrays.copyOf(t, Math.max(t.length * 2, length + cursor));
+            System.arraycopy(cards, 0, t, length, cursor);
+            length += cursor;
+        }
+        tape = Arrays.copyOf(t, length);
+        shoeRound = Arrays.copyOf(sr, shoes);
+        shoeStart = Arrays.copyOf(ss, shoes);
+    }
+
+    /* Cards taken by a player hitting until bust, or -1 if the shoe runs out first */
+    private static int playerReserve(final byte[] cards, final int from)
+    {
+        int state = HandState.EMPTY;
+        for (int i = from; i < cards.length; i++)
+        {
+            state = HandState.next(state, Card.faceValue(cards[i]));
+            if (HandState.isBust(state)) return i - from + 1;
+        }
+        return -1;
+    }
+
+    /* Cards taken by a dealer hitting until 17, or -1 if the shoe runs out first */
+    private static int dealerReserve(final byte[] cards, final int from)
+    {
+        int state = HandState.EMPTY;
+        for (int i = from; i < cards.length; i++)
+        {
+            state = HandState.next(state, Card.faceValue(cards[i]));
+            if (i - from >= 1 && HandState.softScore(state) >= MINIMUM_DEALER_SCORE) return i - from + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return New reader, dealing from the first round of the tape
+     */
+    public Reader reader()
+    {
+        return new Reader();
+    }
+
+    /**
+     * @return Number of rounds recorded on the tape
+     */
+    public int rounds()
+    {
+        return rounds;
+    }
+
+    /**
+     * @return Number of shuffled shoes on the tape
+     */
+    public int shoes()
+    {
+        return shoeStart.length;
+    }
+
+    /**
+     * @return Maximum number of cards contained in each shoe
+     */
+    public int shoeSize()
+    {
+        return shoeSize;
+    }
+
+    /**
+     * Defines a cursor into the tape, behaving as a shoe
+     *
+     * Readers are not thread-safe, use one per table.
+     */
+    public class Reader implements CardSource
+    {
+        /* Current round & the shoe it belongs to */
+        private int round = 0, shoe = 0;
+        /* Cards dealt to the player & dealer of the current round */
+        private int playerDealt = 0, dealerDealt = 0;
+
+        @Override public int dealCode()
+        {
+            if (playerDealt >= reserved(playerCards))
+                throw new NoSuchElementException("Round has exceeded its reserved cards");
+            return tape[roundStart[round] + playerDealt++];
+        }
+
+        @Override public int dealDealerCode()
+        {
+            if (dealerDealt >= reserved(dealerCards))
+                throw new NoSuchElementException("Round has exceeded its reserved cards");
+            return tape[roundStart[round] + playerCards[round] + dealerDealt++];
+        }
+
+        /**
+         * Moves on to the next round, which may begin the next shoe
+         */
+        @Override public void endRound()
+        {
+            round++;
+            playerDealt = dealerDealt = 0;
+            if (shoe + 1 < shoeRound.length && shoeRound[shoe + 1] == round)
+                shoe++;
+        }
+
+        /**
+         * @return Percentage [0.0,1.0] of how many cards of the shoe have been reserved by rounds
+         */
+        @Override public float penetration()
+        {
+            if (round >= rounds) return 1.0f;
+            return (roundStart[round] - shoeStart[shoe]) / (float)shoeSize;
+        }
+
+        /**
+         * Moves on to the next shoe of the tape, unless no card of the current shoe has been dealt
+         */
+        @Override public void shuffle()
+        {
+            if (round == shoeRound[shoe] && playerDealt + dealerDealt == 0) return;
+            playerDealt = dealerDealt = 0;
+            if (shoe + 1 < shoeRound.length) round = shoeRound[++shoe];
+            else round = rounds;
+        }
+
+        private int reserved(final byte[] cards)
+        {
+            if (round >= rounds) throw new NoSuchElementException("All rounds of the tape have been dealt");
+            return cards[round];
+        }
+    }
+}
@@ -18,12 +18,16 @@
 
 package blackjack.card;
 
+import util.Xoroshiro128;
+
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.util.Objects.requireNonNull;
+
 
 /**
  * Defines a shoe at a Blackjack table
@@ -47,10 +51,19 @@ public class Shoe
      * @param seed Random seed sequence
      */
     public Shoe(final int decks, final long seed)
+    {
+        this(decks, new Xoroshiro128(seed));
+    }
+
+    /**
+     * @param decks Number of decks to be shuffled together
+     * @param generator Generator which determines the order cards are dealt in
+     */
+    public Shoe(final int decks, final Random generator)
     {
         if (decks < 1)
             throw new IllegalArgumentException("Number of decks in the shoe must be possible and non-zero");
-        generator = new Random(seed);
+        this.generator = requireNonNull(generator);
         size = decks * DEFAULT_DECK_SIZE;
         shoe = Suit.set().stream()
                 .flatMap(s -> Face.set().stream()
@@ -0,0 +1,127 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package blackjack.player;
+
+import blackjack.card.Face;
+
+
+/**
+ * Defines a hand of Blackjack as the state of a finite automaton
+ *
+ * A state encodes the hand's hard score and whether it holds an ace: `2 * hard + ace`.
+ * Dealing a card is one lookup of the transition table (state × face value), and every
+ * property of a hand, its soft score and whether it has busted or reached 21, is one lookup
+ * of a table keyed by state. Hard scores saturate once bust, so the tables stay small.
+ */
+public final class HandState
+{
+    /* State of a hand before any card is dealt */
+    public static final int EMPTY = 0;
+
+    /* Highest hard score tracked: 20, hit with a ten. Beyond it every hand is simply bust */
+    private static final int MAXIMUM_HARD_SCORE = 30;
+    /* Number of distinct states */
+    public static final int STATES = 2 * (MAXIMUM_HARD_SCORE + 1);
+
+    private static final int MAXIMUM_SCORE = 21;
+    private static final int ACE_ADDITIONAL_SCORE = 10;
+    private static final int ACE_VALUE = Face.ACE.getValue();
+    private static final int VALUES = Face.TEN.getValue() + 1;
+
+    private static final int FLAG_BUST = 1, FLAG_TWENTY_ONE = 2;
+
+    /* Next state, [state][face value] */
+    private static final byte[] NEXT = new byte[STATES * VALUES];
+    private static final byte[] SOFT_SCORE = new byte[STATES];
+    private static final byte[] FLAGS = new byte[STATES];
+
+    static
+    {
+        for (int state = 0; state < STATES; state++)
+        {
+            final int hard = state >> 1;
+            final boolean ace = (state & 1) != 0;
+            for (int value = 1; value < VALUES; value++)
+            {
+                final int next = Math.min(hard + value, MAXIMUM_HARD_SCORE);
+                NEXT[state * VALUES + value] = (byte)(2 * next + (ace || value == ACE_VALUE ? 1 : 0));
+            }
+            final int soft = ace && hard + ACE_ADDITIONAL_SCORE <= MAXIMUM_SCORE ? hard + ACE_ADDITIONAL_SCORE : hard;
+            SOFT_SCORE[state] = (byte)soft;
+            FLAGS[state] = (byte)((hard > MAXIMUM_SCORE ? FLAG_BUST : 0) | (soft == MAXIMUM_SCORE ? FLAG_TWENTY_ONE : 0));
+        }
+    }
+
+    private HandState() { }
+
+    /**
+     * @param state State of the hand
+     * @param value Value of the card dealt, see Face#getValue
+     * @return State of the hand after the card is dealt
+     */
+    public static int next(final int state, final int value)
+    {
+        return NEXT[state * VALUES + value];
+    }
+
+    /**
+     * @param state State of the hand
+     * @return Score of the hand, treating aces with a value of 1
+     */
+    public static int hardScore(final int state)
+    {
+        return state >> 1;
+    }
+
+    /**
+     * @param state State of the hand
+     * @return true if the hand contains at least one ace
+     */
+    public static boolean hasAce(final int state)
+    {
+        return (state & 1) != 0;
+    }
+
+    /**
+     * @param state State of the hand
+     * @return Maximum score of the hand which does not bust, see Player#getSoftScore
+     */
+    public static int softScore(final int state)
+    {
+        return SOFT_SCORE[state];
+    }
+
+    /**
+     * @param state State of the hand
+     * @return true if the hand's score exceeds 21
+     */
+    public static boolean isBust(final int state)
+    {
+        return (FLAGS[state] & FLAG_BUST) != 0;
+    }
+
+    /**
+     * @param state State of the hand
+     * @return true if the hand's soft score is 21
+     */
+    public static boolean isTwentyOne(final int state)
+    {
+        return (FLAGS[state] & FLAG_TWENTY_ONE) != 0;
+    }
+}
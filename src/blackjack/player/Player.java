@@ -19,7 +19,6 @@
 package blackjack.player;
 
 import blackjack.card.Card;
-import blackjack.card.Face;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,19 +33,23 @@ import static java.util.Objects.requireNonNull;
  * Defines a Blackjack player
  *
  * Any participant at the table is considered a player
+ *
+ * Players are headless by default: a hand is only primitive counters,
+ * and dealt cards are only recorded onto the field if an observer requests it.
  */
 public abstract class Player implements Consumer<Card>
 {
     private final List<Card> field = new ArrayList<>();
+    /* Cards are only recorded onto the field if an observer has requested them */
+    private boolean fieldTracked = false;
 
-    private int score = 0;
-    private boolean hasAce = false;
+    /* Hand of the player, see HandState */
+    private int state = HandState.EMPTY;
     private final String name;
 
     /* Maximum player score - anything beyond is considered a 'bust' */
     public static final int MAXIMUM_SCORE = 21;
 
-    private static final int ACE_ADDITIONAL_SCORE = 10;
     private static final String DEFAULT_NAME_FORMAT = "P-%s";
 
     public Player(final String name)
@@ -76,11 +79,9 @@ public abstract class Player implements Consumer<Card>
      */
     @Override public void accept(final Card card)
     {
-        field.add(requireNonNull(card));
-        final Face f = card.getFace();
-        score += f.getValue();
-        if (f == Face.ACE)
-            hasAce = true;
+        if (fieldTracked)
+            field.add(requireNonNull(card));
+        state = HandState.next(state, card.getFace().getValue());
     }
 
     /**
@@ -88,7 +89,7 @@ public abstract class Player implements Consumer<Card>
      */
     public boolean hasAce()
     {
-        return hasAce;
+        return HandState.hasAce(state);
     }
 
     /**
@@ -101,14 +102,7 @@ public abstract class Player implements Consumer<Card>
      */
     public int getSoftScore()
     {
-        if (hasAce)
-        {
-            final int possible = score + ACE_ADDITIONAL_SCORE;
-            if (possible <= MAXIMUM_SCORE)
-                return possible;
-        }
-
-        return score;
+        return HandState.softScore(state);
     }
 
     /**
@@ -116,14 +110,38 @@ public abstract class Player implements Consumer<Card>
      */
     public int getHardScore()
     {
-        return score;
+        return HandState.hardScore(state);
     }
 
     /**
+     * @return State of the player's hand, see HandState
+     */
+    public int getHandState()
+    {
+        return state;
+    }
+
+    /**
+     * Requests that cards dealt to the player are recorded onto their field
+     *
+     * Observers which inspect the field should request this before any card is dealt.
+     * Once requested, the field remains tracked for the lifetime of the player.
+     */
+    public void trackField()
+    {
+        fieldTracked = true;
+    }
+
+    /**
+     * The field is only populated if it has been requested, see `trackField`
+     *
      * @return Read-only list of cards on the player's field
+     * @throws IllegalStateException if the field has not been requested
      */
     public List<Card> getField()
     {
+        if (!fieldTracked)
+            throw new IllegalStateException("Field of " + name + " is not tracked, see Player#trackField");
         return Collections.unmodifiableList(field);
     }
 
@@ -132,7 +150,7 @@ public abstract class Player implements Consumer<Card>
      */
     public boolean hasBusted()
     {
-        return score > MAXIMUM_SCORE;
+        return HandState.isBust(state);
     }
 
     /**
@@ -140,7 +158,7 @@ public abstract class Player implements Consumer<Card>
      */
     public boolean hasBlackjack()
     {
-        return getSoftScore() == MAXIMUM_SCORE;
+        return HandState.isTwentyOne(state);
     }
 
     /**
@@ -148,9 +166,9 @@ public abstract class Player implements Consumer<Card>
      */
     public void reset()
     {
-        score = 0;
-        hasAce = false;
-        field.clear();
+        state = HandState.EMPTY;
+        if (fieldTracked)
+            field.clear();
     }
 
     /**
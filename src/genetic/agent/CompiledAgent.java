@@ -0,0 +1,95 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.agent;
+
+import blackjack.player.Player;
+
+import java.util.Random;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Defines an agent whose weights have been compiled into a policy, see PolicyCompiler
+ *
+ * The weights are fixed once compiled, so a compiled agent suits a champion
+ * which is played for many rounds, ex. for benchmarks or tournament play.
+ *
+ * Compiling only pays off for deterministic weights (0 or Integer.MAX_VALUE), which become
+ * constant decisions. A stochastic state still draws from the generator, and its compiled
+ * case is measurably slower than indexing the weights, see AgentBenchmark. Weights bred by
+ * AgentMatrix are drawn from [0, Integer.MAX_VALUE), so an evolved champion is rarely
+ * deterministic anywhere. If no weight is deterministic, the agent is therefore interpreted
+ * exactly as ConcreteAgent#hit, and compiling gains nothing.
+ */
+public final class CompiledAgent extends Player
+{
+    private final Policy policy;
+    /* Weights which are interpreted rather than compiled, otherwise null */
+    private final int[] weights;
+    private final Random generator;
+
+    /**
+     * @param weights Weights of the agent, see ConcreteAgent#getWeights
+     * @param generator Generator of the agent's stochastic decisions, owned by the agent
+     */
+    public CompiledAgent(final int[] weights, final Random generator)
+    {
+        final boolean compile = anyDeterministic(weights);
+        this.policy = compile ? PolicyCompiler.compile(weights) : interpreted(weights);
+        this.weights = compile ? null : weights.clone();
+        this.generator = requireNonNull(generator);
+    }
+
+    /**
+     * Determines whether or not the player should hit, see ConcreteAgent#hit
+     *
+     * @return true if the player should hit
+     */
+    @Override public boolean hit()
+    {
+        if (weights != null) // Same as ConcreteAgent#hit
+            return weights[ConcreteAgent.weightIndex(getHandState())] > generator.nextInt(Integer.MAX_VALUE);
+        return policy.hit(getHandState(), generator);
+    }
+
+    /**
+     * @return Policy of the agent, compiled unless none of its weights are deterministic
+     */
+    public Policy getPolicy()
+    {
+        return policy;
+    }
+
+    private static boolean anyDeterministic(final int[] weights)
+    {
+        for (final int w : weights)
+            if (PolicyCompiler.isDeterministic(w)) return true;
+        return false;
+    }
+
+    /* Decides as ConcreteAgent#hit, throwing on states without a situation */
+    private static Policy interpreted(final int[] weights)
+    {
+        if (weights.length != ConcreteAgent.SITUATIONS)
+            throw new IllegalArgumentException("Weights do not match the agent's situations");
+        final int[] w = weights.clone();
+        return (handState, generator) -> w[ConcreteAgent.weightIndex(handState)] > generator.nextInt(Integer.MAX_VALUE);
+    }
+}
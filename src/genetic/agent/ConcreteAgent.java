@@ -18,27 +18,58 @@
 
 package genetic.agent;
 
+import blackjack.player.HandState;
 import blackjack.player.Player;
+import util.Xoroshiro128;
 
 import java.io.Serializable;
 import java.util.Random;
 
+import static java.util.Objects.requireNonNull;
+
 
 /**
  * Defines a fully-fledged Blackjack player.
  */
 public class ConcreteAgent extends Player implements Agent<ConcreteAgent>, Serializable
 {
+    private static final long serialVersionUID = 1L;
+
+    /* Number of distinct situations (hard score, has ace) in which an agent must decide */
+    public static final int SITUATIONS = 17 + 19;
+    /* Index of the weight of each hand state, see HandState. -1 for hands of fewer than two cards or beyond 20 */
+    private static final byte[] WEIGHT_INDEX = new byte[HandState.STATES];
+
+    static
+    {
+        for (int state = 0; state < HandState.STATES; state++)
+        {
+            final int hard = HandState.hardScore(state);
+            final boolean ace = HandState.hasAce(state);
+            WEIGHT_INDEX[state] = (byte)(hard >= (ace ? 2 : 4) && hard < MAXIMUM_SCORE ? weightIndex(hard, ace) : -1);
+        }
+    }
+
     private final Random generator;
     // Structure: [weights from score, no aces][17][weights from score, at least one ace][19]
-    private final int[] weights = new int[17 + 19];
+    private final int[] weights = new int[SITUATIONS];
 
     /**
      * @param generator Random seed sequence
      */
     public ConcreteAgent(final long seed)
     {
-        this.generator = new Random(seed);
+        this(new Xoroshiro128(seed));
+    }
+
+    /**
+     * Decisions are drawn from the generator, ex. a CounterRandom to replay them in isolation
+     *
+     * @param generator Generator of the agent's decisions, owned by the agent
+     */
+    public ConcreteAgent(final Random generator)
+    {
+        this.generator = requireNonNull(generator);
     }
 
     /**
@@ -50,13 +81,48 @@ public class ConcreteAgent extends Player implements Agent<ConcreteAgent>, Seria
      * @return true if the player should hit
      */
     @Override public boolean hit()
+    {
+        return weights[weightIndex(getHandState())] > generator.nextInt(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Maps a situation of the agent to the index of its weight
+     *
+     * @param hardScore Score of the hand, treating aces with a value of 1
+     * @param hasAce true if the hand contains at least one ace
+     * @return Index of the weight to be used in the specified situation
+     */
+    public static int weightIndex(final int hardScore, final boolean hasAce)
     {
         // Equation via 'Multiple Linear Regression' calculator
-        final int index = -4 + 19 * (hasAce() ? 1: 0) + getHardScore();
         /* If the agent doesn't have an ace, then only scores [4, 20] are possible.
         If the agent has at least one ace, then scores [2, 20] are possible.
         Therefore there are 17 + 19 => 36 possible cases (indexes) to map. */
-        return weights[index] > generator.nextInt(Integer.MAX_VALUE);
+        return -4 + 19 * (hasAce ? 1: 0) + hardScore;
+    }
+
+    /**
+     * Maps a hand state of the agent to the index of its weight, see HandState
+     *
+     * @param handState State of the hand, in which the agent must decide
+     * @return Index of the weight to be used in the specified state, or -1 if an agent never decides in it
+     */
+    public static int weightIndex(final int handState)
+    {
+        return WEIGHT_INDEX[handState];
+    }
+
+    /**
+     * Calculates the likelihood of an agent hitting, given the weight of the situation
+     *
+     * An agent hits if the weight exceeds a uniform draw from [0, Integer.MAX_VALUE).
+     *
+     * @param weight Weight of the situation
+     * @return Probability [0.0,1.0] of the agent hitting
+     */
+    public static double hitProbability(final int weight)
+    {
+        return Math.max(weight, 0) / (double)Integer.MAX_VALUE;
     }
 
     /**
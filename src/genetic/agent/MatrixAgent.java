@@ -0,0 +1,93 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.agent;
+
+import blackjack.player.Player;
+import genetic.population.AgentMatrix;
+
+import java.util.Random;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Defines a lightweight agent, viewing one row of an AgentMatrix
+ *
+ * The view owns no weights, it reads them from the matrix row it is bound to,
+ * so a view may be re-bound to any number of agents in turn. Decisions are
+ * identical to a ConcreteAgent with the same weights and generator.
+ */
+public class MatrixAgent extends Player
+{
+    private final AgentMatrix matrix;
+    private final Random generator;
+    private int offset;
+
+    /**
+     * @param matrix Matrix containing the agent's weights
+     * @param agent Index of the agent within the matrix
+     * @param generator Generator of the agent's decisions
+     */
+    public MatrixAgent(final AgentMatrix matrix, final int agent, final Random generator)
+    {
+        this.matrix = requireNonNull(matrix);
+        this.generator = requireNonNull(generator);
+        bind(agent);
+    }
+
+    /**
+     * Determines whether or not the player should hit, see ConcreteAgent#hit
+     *
+     * @return true if the player should hit
+     */
+    @Override public boolean hit()
+    {
+        return matrix.weight(offset + ConcreteAgent.weightIndex(getHandState()))
+                > generator.nextInt(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Re-binds the view to another agent of the matrix
+     *
+     * @param agent Index of the agent within the matrix
+     */
+    public void bind(final int agent)
+    {
+        offset = matrix.offset(agent);
+    }
+
+    /**
+     * @return Copy of the weights of the agent the view is bound to
+     */
+    public int[] getWeights()
+    {
+        final int[] row = new int[ConcreteAgent.SITUATIONS];
+        for (int i = 0; i < row.length; i++)
+            row[i] = matrix.weight(offset + i);
+        return row;
+    }
+
+    /**
+     * @return Index of the agent the view is bound to
+     */
+    public int getAgent()
+    {
+        return offset / ConcreteAgent.SITUATIONS;
+    }
+}
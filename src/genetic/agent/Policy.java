@@ -0,0 +1,38 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.agent;
+
+import java.util.Random;
+
+
+/**
+ * Defines a hit/stand decision, keyed by the state of the hand
+ *
+ * See PolicyCompiler for policies compiled from an agent's weights.
+ */
+@FunctionalInterface
+public interface Policy
+{
+    /**
+     * @param handState State of the hand, see HandState
+     * @param generator Generator of stochastic decisions
+     * @return true if the player should hit
+     */
+    boolean hit(final int handState, final Random generator);
+}
@@ -0,0 +1,283 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.agent;
+
+import blackjack.player.HandState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+
+
+/**
+ * Compiles an agent's weights into a hidden class, specialized to the agent
+ *
+ * The weights are baked into a single switch over the hand state. A weight of 0 never hits
+ * and a weight of Integer.MAX_VALUE always hits, so those states become constant returns and
+ * never consult the generator. Only genuinely stochastic states draw from it, against their
+ * weight as a constant. With a single policy at a call site, the JIT inlines the whole decision.
+ *
+ * Stochastic states draw exactly as ConcreteAgent#hit does, therefore an agent with no
+ * deterministic weights makes the same decisions from the same generator. Deterministic states
+ * skip the draw, so later decisions are identically distributed but drawn from a shifted stream.
+ * States without a situation throw ArrayIndexOutOfBoundsException, as ConcreteAgent#hit does.
+ *
+ * Compilation takes a fraction of a millisecond, and is intended for champions played many rounds.
+ * Only deterministic states are faster than interpreted weights, see CompiledAgent.
+ */
+public final class PolicyCompiler
+{
+    private static final String CLASS_NAME = PolicyCompiler.class.getPackageName().replace('.', '/') + "/CompiledPolicy";
+    private static final String INTERFACE_NAME = Policy.class.getName().replace('.', '/');
+
+    /* Class file version of Java 5, verified by inference and therefore free of stack map frames */
+    private static final int CLASS_VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    /* Constant pool tags */
+    private static final int UTF8 = 1, INTEGER = 3, CLASS = 7, METHOD_REF = 10, NAME_AND_TYPE = 12;
+
+    /* Opcodes */
+    private static final int ICONST_0 = 0x03, ICONST_1 = 0x04, LDC_W = 0x13, ILOAD_1 = 0x1B, ALOAD_0 = 0x2A,
+            ALOAD_2 = 0x2C, DUP = 0x59, IF_ICMPLT = 0xA1, TABLESWITCH = 0xAA, IRETURN = 0xAC, RETURN = 0xB1,
+            INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7, NEW = 0xBB, ATHROW = 0xBF;
+
+    /* Bytes of the invalid case: new, dup, iload_1, invokespecial, athrow */
+    private static final int INVALID_CASE_BYTES = 3 + 1 + 1 + 3 + 1;
+
+    /* Bytes of a stochastic case: aload_2, ldc_w, invokevirtual, ldc_w, if_icmplt, iconst_0, ireturn */
+    private static final int STOCHASTIC_CASE_BYTES = 1 + 3 + 3 + 3 + 3 + 1 + 1;
+
+    private PolicyCompiler() { }
+
+    /**
+     * @param weights Weights of an agent, see ConcreteAgent#getWeights
+     * @return Policy which decides identically to the weights, see the class documentation
+     */
+    public static Policy compile(final int[] weights)
+    {
+        if (weights.length != SITUATIONS)
+            throw new IllegalArgumentException("Weights do not match the agent's situations");
+        try
+        {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(classFile(weights), true);
+            return (Policy)lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        }
+        catch (final RuntimeException | Error e)
+        {
+            throw e;
+        }
+        catch (final Throwable t)
+        {
+            throw new IllegalStateException("Policy could not be compiled", t);
+        }
+    }
+
+    /**
+     * @param weight Weight of a situation
+     * @return true if the weight decides the same way for every draw, see ConcreteAgent#hitProbability
+     */
+    public static boolean isDeterministic(final int weight)
+    {
+        return weight <= 0 || weight == Integer.MAX_VALUE;
+    }
+
+    /* Class file of a Policy whose `hit` switches over the hand state */
+    private static byte[] classFile(final int[] weights) throws IOException
+    {
+        final ConstantPool pool = new ConstantPool();
+        final int thisClass = pool.classRef(CLASS_NAME), superClass = pool.classRef("java/lang/Object");
+        final int policy = pool.classRef(INTERFACE_NAME);
+        final int init = pool.utf8("<init>"), initType = pool.utf8("()V");
+        final int objectInit = pool.methodRef(superClass, init, initType);
+        final int hit = pool.utf8("hit"), hitType = pool.utf8("(ILjava/util/Random;)Z");
+        final int nextInt = pool.methodRef(pool.classRef("java/util/Random"), pool.utf8("nextInt"), pool.utf8("(I)I"));
+        final int bound = pool.integer(Integer.MAX_VALUE);
+        final int code = pool.utf8("Code");
+        final int exception = pool.classRef("java/lang/ArrayIndexOutOfBoundsException");
+        final int exceptionInit = pool.methodRef(exception, init, pool.utf8("(I)V"));
+
+        /* Layout: iload_1, tableswitch (aligned to 4 bytes), stand, hit, invalid, then each stochastic case */
+        final int states = HandState.STATES;
+        final int switchPc = 1, standPc = 16 + 4 * states, hitPc = standPc + 2, invalidPc = hitPc + 2;
+        final int[] target = new int[states];
+        final ByteArrayOutputStream cases = new ByteArrayOutputStream();
+        final DataOutputStream c = new DataOutputStream(cases);
+        int pc = invalidPc + INVALID_CASE_BYTES;
+        for (int state = 0; state < states; state++)
+        {
+            final int situation = ConcreteAgent.weightIndex(state);
+            if (situation < 0)
+            {
+                target[state] = invalidPc;
+                continue;
+            }
+            final int weight = weights[situation];
+            if (weight <= 0) target[state] = standPc;
+            else if (weight == Integer.MAX_VALUE) target[state] = hitPc;
+            else
+            {
+                /* Hits if the weight exceeds a draw from [0, Integer.MAX_VALUE) */
+                target[state] = pc;
+                c.writeByte(ALOAD_2);
+                c.writeByte(LDC_W);
+                c.writeShort(bound);
+                c.writeByte(INVOKEVIRTUAL);
+                c.writeShort(nextInt);
+                c.writeByte(LDC_W);
+                c.writeShort(pool.integer(weight));
+                c.writeByte(IF_ICMPLT);
+                c.writeShort(hitPc - (pc + 10));
+                c.writeByte(ICONST_0);
+                c.writeByte(IRETURN);
+                pc += STOCHASTIC_CASE_BYTES;
+            }
+        }
+
+        final ByteArrayOutputStream method = new ByteArrayOutputStream();
+        final DataOutputStream m = new DataOutputStream(method);
+        m.writeByte(ILOAD_1);
+        m.writeByte(TABLESWITCH);
+        m.writeShort(0); // Padding, aligning the operands to 4 bytes
+        m.writeInt(invalidPc - switchPc);
+        m.writeInt(0);
+        m.writeInt(states - 1);
+        for (int state = 0; state < states; state++)
+            m.writeInt(target[state] - switchPc);
+        m.writeByte(ICONST_0);
+        m.writeByte(IRETURN);
+        m.writeByte(ICONST_1);
+        m.writeByte(IRETURN);
+        m.writeByte(NEW);
+        m.writeShort(exception);
+        m.writeByte(DUP);
+        m.writeByte(ILOAD_1);
+        m.writeByte(INVOKESPECIAL);
+        m.writeShort(exceptionInit);
+        m.writeByte(ATHROW);
+        cases.writeTo(m);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(CLASS_VERSION);
+        pool.writeTo(out);
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(policy);
+        out.writeShort(0); // Fields
+
+        out.writeShort(2); // Methods
+        writeMethod(out, init, initType, code, 1, 1,
+                new byte[] { ALOAD_0, (byte)INVOKESPECIAL, (byte)(objectInit >> 8), (byte)objectInit, (byte)RETURN });
+        writeMethod(out, hit, hitType, code, 3, 3, method.toByteArray());
+        out.writeShort(0); // Attributes
+        return bytes.toByteArray();
+    }
+
+    /* Writes a public method with a code attribute, and no exception table */
+    private static void writeMethod(final DataOutputStream out, final int name, final int type, final int code,
+                                    final int maxStack, final int maxLocals, final byte[] bytecode) throws IOException
+    {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);
+        out.writeShort(code);
+        out.writeInt(2 + 2 + 4 + bytecode.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        out.writeShort(0); // Exception table
+        out.writeShort(0); // Attributes
+    }
+
+    /* Constant pool of the class file, de-duplicating its entries */
+    private static final class ConstantPool
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(final String value)
+        {
+            return entry("U" + value, () -> { out.writeByte(UTF8); out.writeUTF(value); });
+        }
+
+        int integer(final int value)
+        {
+            return entry("I" + value, () -> { out.writeByte(INTEGER); out.writeInt(value); });
+        }
+
+        int classRef(final String name)
+        {
+            final int n = utf8(name);
+            return entry("C" + name, () -> { out.writeByte(CLASS); out.writeShort(n); });
+        }
+
+        int methodRef(final int owner, final int name, final int type)
+        {
+            final String key = "M" + owner + ':' + name + ':' + type;
+            final int nameAndType = entry("N" + name + ':' + type,
+                    () -> { out.writeByte(NAME_AND_TYPE); out.writeShort(name); out.writeShort(type); });
+            return entry(key, () -> { out.writeByte(METHOD_REF); out.writeShort(owner); out.writeShort(nameAndType); });
+        }
+
+        void writeTo(final DataOutputStream file) throws IOException
+        {
+            file.writeShort(count);
+            bytes.writeTo(file);
+        }
+
+        private int entry(final String key, final Entry writer)
+        {
+            final Integer existing = entries.get(key);
+            if (existing != null) return existing;
+            try
+            {
+                writer.write();
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            entries.put(key, count);
+            return count++;
+        }
+
+        @FunctionalInterface
+        private interface Entry
+        {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.player.HandState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static genetic.agent.ConcreteAgent.weightIndex;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Defines the optimal deterministic hit/stand policy, a baseline for evolved agents
+ *
+ * Two policies are solved for the rules of Blackjack: hit or stand only, players stand on 21,
+ * a bust loses without the dealer playing, and the dealer stands on soft 17.
+ * The first spans the same 36 situations as ConcreteAgent, the second also observes the
+ * dealer's upcard. The cost gap between the two is what an agent loses by ignoring the upcard.
+ *
+ * Dealt from an infinite deck both are solved exactly by dynamic programming.
+ * Dealt from a finite shoe, the situation policy is refined from the infinite deck policy by
+ * flipping decisions while the exact cost of ShoeFitness improves. The upcard policy approximates
+ * each hand's draws by a fresh shoe less the upcard.
+ *
+ * Solving a finite shoe takes seconds, so solutions are persisted to a small file keyed by
+ * the rules and number of decks, see `load`. Regret per generation is then a subtraction.
+ */
+public final class BasicStrategy
+{
+    private final int decks;
+    /* Whether to hit in each situation, see ConcreteAgent#weightIndex */
+    private final boolean[] hit;
+    /* Whether to hit in each situation, [upcard][situation] */
+    private final boolean[][] hitByUpcard;
+    /* Expected cost of a round of each policy, see RoundTally#cost */
+    private final double cost, upcardCost;
+
+    /* Identifies the rules solved for, any change invalidates the cached solutions */
+    private static final String RULES = "hit-stand;player-stands-21;bust-loses;dealer-stands-soft-17";
+    private static final int MAGIC = 0x53424A42; // "BJBS"
+    private static final int VERSION = 1;
+
+    /* Card values range from ace (1) to ten-valued cards (10) */
+    private static final int VALUES = 11, TEN = VALUES - 1;
+    /* Situation in which an agent holds a soft 21 (ace & ten), and always stands */
+    private static final int SOFT_TWENTY_ONE = weightIndex(HandState.next(HandState.next(HandState.EMPTY, 1), TEN));
+
+    private BasicStrategy(final int decks, final boolean[] hit, final boolean[][] hitByUpcard,
+                          final double cost, final double upcardCost)
+    {
+        this.decks = decks;
+        this.hit = hit;
+        this.hitByUpcard = hitByUpcard;
+        this.cost = cost;
+        this.upcardCost = upcardCost;
+    }
+
+    /**
+     * Solves the optimal policies, without consulting any cache
+     *
+     * @param decks Number of decks combined into the shoe, [1, ShoeFitness.MAX_DECKS], or 0 for an infinite deck
+     * @return Optimal policies
+     */
+    public static BasicStrategy solve(final int decks)
+    {
+        if (decks < 0 || decks > ShoeFitness.MAX_DECKS)
+            throw new IllegalArgumentException("Number of decks must be within [0, " + ShoeFitness.MAX_DECKS + "]");
+        final int[] counts = new int[VALUES];
+        for (int v = 1; v < VALUES; v++)
+            counts[v] = v == TEN ? 16 : 4;
+
+        /* Policy of the situations, against the dealer's outcome before any card is seen */
+        final double[] draw = draw(counts);
+        final boolean[] hit = new boolean[SITUATIONS];
+        optimize(draw, InfiniteDeckFitness.dealerOutcomes(), hit);
+        double cost = InfiniteDeckFitness.expectedCost(weights(hit));
+        if (decks > 0)
+            cost = refine(new ShoeFitness(decks), hit);
+
+        /* Policy of the situations per upcard, against the dealer's outcome given the upcard */
+        final boolean[][] hitByUpcard = new boolean[VALUES][SITUATIONS];
+        final DealerOutcomes dealer = new DealerOutcomes(1, 1);
+        double upcardCost = 0;
+        for (int upcard = 1; upcard < VALUES; upcard++)
+        {
+            final double[] d, upcardDraw;
+            if (decks == 0)
+            {
+                d = DealerOutcomes.infinite(upcard);
+                upcardDraw = draw;
+            }
+            else
+            {
+                final int[] remaining = new int[VALUES];
+                for (int v = 1; v < VALUES; v++)
+                    remaining[v] = counts[v] * decks;
+                remaining[upcard]--;
+                d = dealer.finite(upcard, remaining);
+                upcardDraw = draw(remaining);
+            }
+            upcardCost += draw[upcard] * optimize(upcardDraw, d, hitByUpcard[upcard]);
+        }
+        return new BasicStrategy(decks, hit, hitByUpcard, cost, upcardCost);
+    }
+
+    /**
+     * Loads the optimal policies from the cache directory, solving and caching them if absent
+     *
+     * @param directory Directory of the cached solutions
+     * @param decks Number of decks combined into the shoe, or 0 for an infinite deck
+     * @return Optimal policies
+     */
+    public static BasicStrategy load(final Path directory, final int decks)
+    {
+        final Path file = requireNonNull(directory).resolve("basic-strategy-" + decks + ".bin");
+        try
+        {
+            final BasicStrategy cached = read(Files.readAllBytes(file));
+            if (cached != null && cached.decks == decks) return cached;
+        }
+        catch (final NoSuchFileException e) { /* Not yet solved */ }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        final BasicStrategy solved = solve(decks);
+        try
+        {
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            Files.write(temp, solved.toBytes());
+            Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return solved;
+    }
+
+    /**
+     * @param costPerRound Expected cost of a round of a policy, see RoundTally#cost
+     * @return Cost beyond the optimal policy of the situations
+     */
+    public double regret(final double costPerRound)
+    {
+        return costPerRound - cost;
+    }
+
+    /**
+     * Evaluates the exact cost of the weights, see InfiniteDeckFitness & ShoeFitness
+     *
+     * Dealt from a finite shoe, the evaluation takes up to a second or two.
+     *
+     * @param weights Weights of an agent
+     * @return Cost beyond the optimal policy of the situations
+     */
+    public double regret(final int[] weights)
+    {
+        return regret(decks == 0 ? InfiniteDeckFitness.expectedCost(weights) : new ShoeFitness(decks).expectedCost(weights));
+    }
+
+    /**
+     * @param situation Situation of the agent, see ConcreteAgent#weightIndex
+     * @return true if the optimal policy hits
+     */
+    public boolean hits(final int situation)
+    {
+        return hit[situation];
+    }
+
+    /**
+     * @param situation Situation of the agent, see ConcreteAgent#weightIndex
+     * @param upcard Value of the dealer's upcard, see Face#getValue
+     * @return true if the optimal policy which observes the upcard hits
+     */
+    public boolean hits(final int situation, final int upcard)
+    {
+        return hitByUpcard[upcard][situation];
+    }
+
+    /**
+     * @return Weights which play the optimal policy of the situations, see ConcreteAgent#hitProbability
+     */
+    public int[] getWeights()
+    {
+        return weights(hit);
+    }
+
+    /**
+     * @return Expected cost of a round of the optimal policy of the situations
+     */
+    public double getCost()
+    {
+        return cost;
+    }
+
+    /**
+     * @return Expected cost of a round of the optimal policy which observes the upcard
+     */
+    public double getUpcardCost()
+    {
+        return upcardCost;
+    }
+
+    /**
+     * @return Number of decks combined into the shoe, or 0 for an infinite deck
+     */
+    public int getDecks()
+    {
+        return decks;
+    }
+
+    /**
+     * @return String representation of the policies' costs
+     */
+    @Override public String toString()
+    {
+        return String.format("Decks: %s   Optimal cost: %.5f   With upcard: %.5f",
+                decks == 0 ? "infinite" : Integer.toString(decks), cost, upcardCost);
+    }
+
+    /* Finds the optimal policy by dynamic programming, returning the expected cost of a round */
+    private static double optimize(final double[] draw, final double[] dealer, final boolean[] hit)
+    {
+        /* Resolve hands from the highest state down, as hitting only ever increases the state */
+        final double[] value = new double[HandState.STATES];
+        for (int state = HandState.STATES - 1; state >= 0; state--)
+        {
+            if (HandState.isBust(state)) continue;
+            final double stand = DealerOutcomes.expectedCost(HandState.softScore(state), dealer);
+            if (HandState.isTwentyOne(state)) // Players stand on Blackjack
+            {
+                value[state] = stand;
+                continue;
+            }
+            double hitting = 0;
+            for (int c = 1; c < VALUES; c++)
+            {
+                final int next = HandState.next(state, c);
+                hitting += draw[c] * (HandState.isBust(next) ? 2 : value[next]);
+            }
+            value[state] = Math.min(stand, hitting);
+            final int situation = weightIndex(state);
+            if (situation >= 0) hit[situation] = hitting < stand;
+        }
+
+        /* Agent begins their turn with two cards */
+        double cost = 0;
+        for (int c1 = 1; c1 < VALUES; c1++)
+            for (int c2 = 1; c2 < VALUES; c2++)
+                cost += draw[c1] * draw[c2] * value[HandState.next(HandState.next(HandState.EMPTY, c1), c2)];
+        return cost;
+    }
+
+    /* Flips decisions while the exact cost improves, returning the cost of the refined policy */
+    private static double refine(final ShoeFitness fitness, final boolean[] hit)
+    {
+        double best = fitness.expectedCost(weights(hit));
+        boolean improved = true;
+        while (improved)
+        {
+            improved = false;
+            for (int s = 0; s < SITUATIONS; s++)
+            {
+                if (s == SOFT_TWENTY_ONE) continue;
+                hit[s] = !hit[s];
+                final double c = fitness.expectedCost(weights(hit));
+                if (c < best)
+                {
+                    best = c;
+                    improved = true;
+                }
+                else hit[s] = !hit[s];
+            }
+        }
+        return best;
+    }
+
+    /* Probability of drawing each card value from the composition */
+    private static double[] draw(final int[] counts)
+    {
+        int total = 0;
+        for (int v = 1; v < VALUES; v++)
+            total += counts[v];
+        final double[] draw = new double[VALUES];
+        for (int v = 1; v < VALUES; v++)
+            draw[v] = counts[v] / (double)total;
+        return draw;
+    }
+
+    /* Weights of a deterministic policy: an agent always hits above, and never hits at zero */
+    private static int[] weights(final boolean[] hit)
+    {
+        final int[] weights = new int[SITUATIONS];
+        for (int s = 0; s < SITUATIONS; s++)
+            weights[s] = hit[s] ? Integer.MAX_VALUE : 0;
+        return weights;
+    }
+
+    /* Serializes the solution, see `read` */
+    private byte[] toBytes()
+    {
+        final byte[] rules = RULES.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer b = ByteBuffer.allocate(4 * Integer.BYTES + rules.length + Integer.BYTES
+                + VALUES * SITUATIONS + 2 * Double.BYTES + Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putInt(VERSION).putInt(decks).putInt(rules.length).put(rules).putInt(SITUATIONS);
+        for (final boolean h : hit)
+            b.put((byte)(h ? 1 : 0));
+        for (int upcard = 1; upcard < VALUES; upcard++)
+            for (final boolean h : hitByUpcard[upcard])
+                b.put((byte)(h ? 1 : 0));
+        b.putDouble(cost).putDouble(upcardCost);
+        final CRC32C crc = new CRC32C();
+        crc.update(b.array(), 0, b.position());
+        b.putInt((int)crc.getValue());
+        return b.array();
+    }
+
+    /* Deserializes a solution, or null if it is corrupt or was solved for different rules */
+    private static BasicStrategy read(final byte[] bytes)
+    {
+        if (bytes.length < 5 * Integer.BYTES) return null;
+        final CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - Integer.BYTES);
+        final ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (b.getInt(bytes.length - Integer.BYTES) != (int)crc.getValue()) return null;
+        if (b.getInt() != MAGIC || b.getInt() != VERSION) return null;
+        final int decks = b.getInt();
+        final byte[] rules = new byte[b.getInt()];
+        if (rules.length > b.remaining()) return null;
+        b.get(rules);
+        if (!RULES.equals(new String(rules, StandardCharsets.UTF_8)) || b.getInt() != SITUATIONS) return null;
+        final boolean[] hit = new boolean[SITUATIONS];
+        for (int s = 0; s < SITUATIONS; s++)
+            hit[s] = b.get() != 0;
+        final boolean[][] hitByUpcard = new boolean[VALUES][SITUATIONS];
+        for (int upcard = 1; upcard < VALUES; upcard++)
+            for (int s = 0; s < SITUATIONS; s++)
+                hitByUpcard[upcard][s] = b.get() != 0;
+        return new BasicStrategy(decks, hit, hitByUpcard, b.getDouble(), b.getDouble());
+    }
+}
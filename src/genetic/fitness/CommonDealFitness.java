@@ -0,0 +1,144 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.HeadsUpBlackjack;
+import blackjack.card.DealTape;
+import genetic.agent.ConcreteAgent;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Evaluates agents against common random numbers: every agent of a generation is dealt from the same tape
+ *
+ * Much of the spread between agents simulated with independent shoes is luck of the deal.
+ * Dealing every agent of a generation the identical card stream cancels that luck out
+ * of their comparison, so agents can be ranked confidently with far fewer rounds.
+ * Each agent's decisions are still drawn from its own generator.
+ *
+ * The tape of each generation is dealt from a seed derived via SeedSequence,
+ * so results are independent of thread count and a generation can be re-evaluated exactly.
+ */
+public class CommonDealFitness
+{
+    private final int decks, rounds;
+    private final float penetration;
+    private final long rootSeed;
+    private final ForkJoinPool pool;
+
+    /* Tape of the most recently evaluated generation, read-only once dealt */
+    private DealTape tape = null;
+    private int tapeGeneration = 0;
+
+    /**
+     * @param decks Number of decks to be combined into a shoe
+     * @param rounds Number of rounds each agent plays
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     * @param rootSeed Seed of the entire run
+     */
+    public CommonDealFitness(final int decks, final int rounds, final float penetration, final long rootSeed)
+    {
+        this(decks, rounds, penetration, rootSeed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param decks Number of decks to be combined into a shoe
+     * @param rounds Number of rounds each agent plays
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     * @param rootSeed Seed of the entire run
+     * @param pool Pool in which agents are evaluated
+     */
+    public CommonDealFitness(final int decks, final int rounds, final float penetration, final long rootSeed,
+                             final ForkJoinPool pool)
+    {
+        if (decks <= 0) throw new IllegalArgumentException("Shoe size must be positive and non-zero");
+        if (rounds <= 0) throw new IllegalArgumentException("Number of rounds must be positive and non-zero");
+        this.decks = decks;
+        this.rounds = rounds;
+        this.penetration = validateDomain(penetration, 0.0f, 1.0f);
+        this.rootSeed = rootSeed;
+        this.pool = requireNonNull(pool);
+    }
+
+    /**
+     * Evaluates every agent of the generation against the generation's tape
+     *
+     * @param agents Agents of the population, indexed by position
+     * @param generation Generation number
+     * @return Costs of each agent, by population index
+     */
+    public double[] evaluate(final List<ConcreteAgent> agents, final int generation)
+    {
+        final DealTape t = tapeOf(generation);
+        final double[] costs = new double[agents.size()];
+        pool.submit(() -> IntStream.range(0, costs.length).parallel()
+                .forEach(i -> costs[i] = evaluateFitness(agents.get(i), t)))
+                .join();
+        return costs;
+    }
+
+    /**
+     * @param agent Agent to be evaluated
+     * @param generation Generation number, whose tape the agent is dealt from
+     * @return Cost of the agent over the tape
+     */
+    public double evaluateFitness(final ConcreteAgent agent, final int generation)
+    {
+        return evaluateFitness(agent, tapeOf(generation));
+    }
+
+    private double evaluateFitness(final ConcreteAgent agent, final DealTape t)
+    {
+        return new HeadsUpBlackjack(agent, t.reader(), penetration).playRounds(rounds).cost();
+    }
+
+    /**
+     * Deals the tape of the generation, reusing the previous tape if it belongs to the same generation
+     *
+     * @param generation Generation number
+     * @return Tape which every agent of the generation is dealt from
+     */
+    public synchronized DealTape tapeOf(final int generation)
+    {
+        if (tape == null || tapeGeneration != generation)
+        {
+            tape = new DealTape(decks, rounds, penetration, seedOf(generation));
+            tapeGeneration = generation;
+        }
+        return tape;
+    }
+
+    /**
+     * @param generation Generation number
+     * @return Seed which the tape of the generation is dealt from
+     */
+    public long seedOf(final int generation)
+    {
+        /* Agent indices begin at zero, so index -1 is reserved for the tape */
+        return SeedSequence.seed(rootSeed, generation, -1);
+    }
+}
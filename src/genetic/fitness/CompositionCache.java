@@ -0,0 +1,148 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Defines a bounded memo of probability distributions keyed by a compact long
+ *
+ * Least recently used entries are evicted once the capacity is reached.
+ * Hits & misses are counted so the cache can be sized for a workload.
+ * This cache is not thread-safe.
+ */
+public class CompositionCache
+{
+    private final int capacity;
+    private final Map<Long, double[]> cache;
+    private long hits = 0, misses = 0;
+
+    /* Approximate heap footprint of a cache entry: map node, boxed key and array header */
+    private static final int ENTRY_OVERHEAD_BYTES = 40 + 16 + 16;
+
+    /**
+     * @param capacity Maximum number of entries to be retained
+     */
+    public CompositionCache(final int capacity)
+    {
+        if (capacity <= 0) throw new IllegalArgumentException("Cache capacity must be positive and non-zero");
+        this.capacity = capacity;
+        cache = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override protected boolean removeEldestEntry(final Map.Entry<Long, double[]> eldest)
+            {
+                return size() > CompositionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param key Compact key of the entry
+     * @return Cached distribution, or null if the key is absent
+     */
+    public double[] get(final long key)
+    {
+        final double[] v = cache.get(key);
+        if (v != null) hits++;
+        else misses++;
+        return v;
+    }
+
+    /**
+     * @param key Compact key of the entry
+     * @param value Distribution to be cached
+     * @return The specified distribution
+     */
+    public double[] put(final long key, final double[] value)
+    {
+        cache.put(key, value);
+        return value;
+    }
+
+    /**
+     * Removes all entries, retaining the hit & miss counters
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    /**
+     * @return Number of entries currently cached
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * @return Maximum number of entries to be retained
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return Number of lookups which found an entry
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return Number of lookups which did not find an entry
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return Percentage [0.0,1.0] of lookups which found an entry
+     */
+    public double hitRate()
+    {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : hits / (double)lookups;
+    }
+
+    /**
+     * @return Approximate heap footprint of the cached entries, in bytes
+     */
+    public long estimatedBytes()
+    {
+        long bytes = 0;
+        for (final double[] v : cache.values())
+            bytes += ENTRY_OVERHEAD_BYTES + (long)Double.BYTES * v.length;
+        return bytes;
+    }
+
+    /**
+     * @return String representation of the cache's statistics
+     */
+    @Override public String toString()
+    {
+        return String.format("Entries: %d/%d   Hit rate: %.3f   Memory: %.1f KiB",
+                size(), capacity, hitRate(), estimatedBytes() / 1024.0);
+    }
+}
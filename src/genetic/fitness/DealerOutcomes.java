@@ -0,0 +1,280 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.card.Face;
+import blackjack.player.HandState;
+import blackjack.player.Player;
+
+import static genetic.fitness.InfiniteDeckFitness.LOSS;
+import static genetic.fitness.InfiniteDeckFitness.PUSH;
+import static genetic.fitness.InfiniteDeckFitness.WIN;
+
+
+/**
+ * Defines the distribution of the dealer's final outcome, given their upcard
+ *
+ * The dealer's policy is fixed, hitting while their soft score is less than 17, therefore
+ * their final outcome depends only on the upcard and the cards remaining in the shoe.
+ * Outcomes [0, 4] stand on a score of 17 to 21, outcome 5 busts.
+ *
+ * The infinite deck distribution of every hand is computed once, when the class is loaded.
+ * Finite shoe distributions are computed lazily and cached per upcard and composition.
+ * Compositions may be coarsened into buckets of several cards each, trading exactness
+ * for a far smaller key space. A bucket of 1 is exact.
+ *
+ * This table is not thread-safe, use one instance per thread.
+ */
+public final class DealerOutcomes
+{
+    private final int bucket;
+    /* Cache of the finite shoe distributions, per upcard */
+    private final CompositionCache[] caches = new CompositionCache[VALUES];
+    /* Composition of the current lookup, drawn from by the recursion */
+    private final int[] representative = new int[VALUES];
+
+    /* A dealer must hit if their score is less than 17 */
+    private static final int MINIMUM_DEALER_SCORE = 17;
+    /* Dealer outcomes: [0, 4] stands on a score of 17 to 21, 5 busts */
+    public static final int OUTCOMES = Player.MAXIMUM_SCORE - MINIMUM_DEALER_SCORE + 2;
+    public static final int BUST = OUTCOMES - 1;
+
+    /* Card values range from ace (1) to ten-valued cards (10) */
+    private static final int VALUES = Face.TEN.getValue() + 1;
+    private static final int TEN = VALUES - 1;
+    /* Ace through nine are 6 bits each, ten-valued cards are 8 bits: 62 bits total */
+    private static final int COUNT_BITS = 6, TEN_BITS = 8;
+
+    /* Infinite deck distribution of the dealer's final outcome, [hand state][outcome] */
+    private static final double[] INFINITE = new double[HandState.STATES * OUTCOMES];
+
+    static
+    {
+        /* Hands only grow, therefore resolve them from the highest hard score down */
+        for (int state = HandState.STATES - 1; state >= 0; state--)
+        {
+            final int offset = state * OUTCOMES;
+            if (HandState.isBust(state)) INFINITE[offset + BUST] = 1.0;
+            else if (HandState.softScore(state) >= MINIMUM_DEALER_SCORE)
+                INFINITE[offset + HandState.softScore(state) - MINIMUM_DEALER_SCORE] = 1.0;
+            else for (int value = 1; value < VALUES; value++)
+            {
+                final double p = (value == TEN ? 4.0 : 1.0) / 13;
+                final int next = HandState.next(state, value) * OUTCOMES;
+                for (int o = 0; o < OUTCOMES; o++)
+                    INFINITE[offset + o] += p * INFINITE[next + o];
+            }
+        }
+    }
+
+    /**
+     * @param capacity Maximum number of compositions retained for each upcard
+     * @param bucket Number of cards of a value which are treated alike, 1 being exact
+     */
+    public DealerOutcomes(final int capacity, final int bucket)
+    {
+        if (bucket <= 0) throw new IllegalArgumentException("Bucket size must be positive and non-zero");
+        this.bucket = bucket;
+        for (int v = 1; v < VALUES; v++)
+            caches[v] = new CompositionCache(capacity);
+    }
+
+    /**
+     * @param upcard Value of the dealer's upcard, see Face#getValue
+     * @param outcome Outcome of the dealer, [0, 4] stands on 17 to 21, 5 busts
+     * @return Probability of the outcome, dealing from an infinite deck
+     */
+    public static double infinite(final int upcard, final int outcome)
+    {
+        return INFINITE[HandState.next(HandState.EMPTY, upcard) * OUTCOMES + outcome];
+    }
+
+    /**
+     * @param upcard Value of the dealer's upcard, see Face#getValue
+     * @return Distribution of the dealer's final outcome, dealing from an infinite deck
+     */
+    public static double[] infinite(final int upcard)
+    {
+        final double[] d = new double[OUTCOMES];
+        System.arraycopy(INFINITE, HandState.next(HandState.EMPTY, upcard) * OUTCOMES, d, 0, OUTCOMES);
+        return d;
+    }
+
+    /**
+     * Looks up the distribution of the dealer's final outcome, dealing from the remaining cards
+     *
+     * The returned array is shared with the cache and must not be modified.
+     *
+     * @param upcard Value of the dealer's upcard, see Face#getValue
+     * @param counts Number of cards of each value remaining, indexed by value [1, 10].
+     *               The dealer's hole card is unseen, and must be counted as remaining.
+     * @return Distribution of the dealer's final outcome, indexed by outcome
+     */
+    public double[] finite(final int upcard, final int[] counts)
+    {
+        long key = 0;
+        for (int v = 1; v < VALUES; v++)
+        {
+            final int quantized = (counts[v] + bucket / 2) / bucket;
+            if (quantized >= 1 << (v == TEN ? TEN_BITS : COUNT_BITS))
+                throw new IllegalArgumentException("Composition exceeds the key, use a larger bucket");
+            key |= (long)quantized << shift(v);
+            representative[v] = quantized * bucket;
+        }
+        final CompositionCache cache = caches[upcard];
+        final double[] cached = cache.get(key);
+        if (cached != null) return cached;
+        final double[] d = new double[OUTCOMES];
+        accumulate(HandState.next(HandState.EMPTY, upcard), 1.0, d);
+        return cache.put(key, d);
+    }
+
+    /**
+     * Settles a standing player's hand by expectation, rather than playing the dealer's hand
+     *
+     * @param score Soft score the player stands on
+     * @param dealer Distribution of the dealer's final outcome
+     * @return Probabilities of the round's result, indexed by WIN, PUSH & LOSS
+     */
+    public static double[] settle(final int score, final double[] dealer)
+    {
+        final double[] r = new double[3];
+        r[WIN] = dealer[BUST];
+        for (int d = 0; d < BUST; d++)
+        {
+            final int dealerScore = MINIMUM_DEALER_SCORE + d;
+            r[score > dealerScore ? WIN : score == dealerScore ? PUSH : LOSS] += dealer[d];
+        }
+        return r;
+    }
+
+    /**
+     * @param score Soft score the player stands on
+     * @param dealer Distribution of the dealer's final outcome
+     * @return Expected cost of the round, from [0.0, 2.0], see RoundTally#cost
+     */
+    public static double expectedCost(final int score, final double[] dealer)
+    {
+        double cost = 0;
+        for (int d = 0; d < BUST; d++)
+        {
+            final int dealerScore = MINIMUM_DEALER_SCORE + d;
+            if (score == dealerScore) cost += dealer[d];
+            else if (score < dealerScore) cost += 2 * dealer[d];
+        }
+        return cost;
+    }
+
+    /**
+     * Resolves the dealer's turn by sampling their final outcome, rather than dealing their cards
+     *
+     * @param dealer Distribution of the dealer's final outcome
+     * @param uniform Uniform draw from [0.0, 1.0)
+     * @return Outcome of the dealer, [0, 4] stands on 17 to 21, 5 busts
+     */
+    public static int sample(final double[] dealer, final double uniform)
+    {
+        double cumulative = 0;
+        for (int o = 0; o < BUST; o++)
+            if (uniform < (cumulative += dealer[o])) return o;
+        return BUST;
+    }
+
+    /**
+     * @return Number of lookups which found a cached composition, across all upcards
+     */
+    public long getHits()
+    {
+        long hits = 0;
+        for (int v = 1; v < VALUES; v++)
+            hits += caches[v].getHits();
+        return hits;
+    }
+
+    /**
+     * @return Number of lookups which computed a composition, across all upcards
+     */
+    public long getMisses()
+    {
+        long misses = 0;
+        for (int v = 1; v < VALUES; v++)
+            misses += caches[v].getMisses();
+        return misses;
+    }
+
+    /**
+     * @return Number of compositions currently cached, across all upcards
+     */
+    public int size()
+    {
+        int size = 0;
+        for (int v = 1; v < VALUES; v++)
+            size += caches[v].size();
+        return size;
+    }
+
+    /**
+     * @return String representation of the table's statistics
+     */
+    @Override public String toString()
+    {
+        final long lookups = getHits() + getMisses();
+        return String.format("Entries: %d   Bucket: %d   Hit rate: %.3f", size(), bucket,
+                lookups == 0 ? 0.0 : getHits() / (double)lookups);
+    }
+
+    /* Accumulates the dealer's outcomes from the representative composition, weighted by reaching the hand */
+    private void accumulate(final int state, final double p, final double[] d)
+    {
+        if (HandState.isBust(state))
+        {
+            d[BUST] += p;
+            return;
+        }
+        final int soft = HandState.softScore(state);
+        if (soft >= MINIMUM_DEALER_SCORE)
+        {
+            d[soft - MINIMUM_DEALER_SCORE] += p;
+            return;
+        }
+        int total = 0;
+        for (int v = 1; v < VALUES; v++)
+            total += representative[v];
+        if (total == 0) // Coarsened away every card, continue as if dealt from an infinite deck
+        {
+            for (int o = 0; o < OUTCOMES; o++)
+                d[o] += p * INFINITE[state * OUTCOMES + o];
+            return;
+        }
+        for (int v = 1; v < VALUES; v++)
+        {
+            final int n = representative[v];
+            if (n == 0) continue;
+            representative[v]--;
+            accumulate(HandState.next(state, v), p * n / total, d);
+            representative[v]++;
+        }
+    }
+
+    /* Bit offset of the specified value within a composition key */
+    private static int shift(final int value)
+    {
+        return (value - 1) * COUNT_BITS;
+    }
+}
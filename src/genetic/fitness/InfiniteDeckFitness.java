@@ -0,0 +1,204 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.player.HandState;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+
+import static genetic.agent.ConcreteAgent.hitProbability;
+import static genetic.agent.ConcreteAgent.weightIndex;
+
+
+/**
+ * Evaluates the exact expected cost of an agent's policy against the dealer
+ *
+ * Cards are drawn from an infinite deck, therefore each draw is independent
+ * and the dealer's outcome does not depend on the agent's hand. The agent's
+ * stochastic policy is resolved by dynamic programming over hand states,
+ * see HandState, yielding a cost with zero sampling noise in microseconds.
+ *
+ * Rules match Blackjack: dealer stands on soft 17, and a tie is a push.
+ */
+public class InfiniteDeckFitness implements SeededFitness<ConcreteAgent>
+{
+    private final int rounds;
+
+    /* Indices of the expected results of a round */
+    public static final int WIN = 0, PUSH = 1, LOSS = 2;
+
+    /* Card values range from ace (1) to ten-valued cards (10) */
+    private static final int MAX_CARD_VALUE = 10;
+    /* A dealer must hit if their score is less than 17 */
+    private static final int MINIMUM_DEALER_SCORE = 17;
+    /* Dealer outcomes: [0, 4] stands on a score of 17 to 21, 5 busts */
+    private static final int DEALER_OUTCOMES = Player.MAXIMUM_SCORE - MINIMUM_DEALER_SCORE + 2;
+    private static final int DEALER_BUST = DEALER_OUTCOMES - 1;
+
+    /* Probability of drawing each card value, ten-valued cards include Jack, Queen & King */
+    private static final double[] draw = new double[MAX_CARD_VALUE + 1];
+    static
+    {
+        for (int v = 1; v < MAX_CARD_VALUE; v++)
+            draw[v] = 1.0 / 13;
+        draw[MAX_CARD_VALUE] = 4.0 / 13;
+    }
+
+    /* Distribution of the dealer's final outcome, independent of any agent */
+    private static final double[] dealer = dealerOutcomes(HandState.EMPTY);
+
+    /**
+     * @param rounds Number of rounds the expected cost is scaled to,
+     *               so costs are comparable to simulating that many rounds
+     */
+    public InfiniteDeckFitness(final int rounds)
+    {
+        if (rounds <= 0) throw new IllegalArgumentException("Number of rounds must be positive and non-zero");
+        this.rounds = rounds;
+    }
+
+    /**
+     * The exact cost requires no randomness, therefore the seed is ignored
+     *
+     * @param agent Agent to be evaluated
+     * @param seed Random seed sequence (ignored)
+     * @return Expected cost of the agent, scaled to the number of rounds
+     */
+    @Override public double evaluateFitness(final ConcreteAgent agent, final long seed)
+    {
+        return evaluateFitness(agent);
+    }
+
+    /**
+     * @param agent Agent to be evaluated
+     * @return Expected cost of the agent, scaled to the number of rounds
+     */
+    public double evaluateFitness(final ConcreteAgent agent)
+    {
+        return rounds * expectedCost(agent.getWeights());
+    }
+
+    /**
+     * Calculates the expected cost of a single round
+     *
+     * Results are shifted into win: 0, push: 1, loss: 2.
+     *
+     * @param weights Weights of the agent
+     * @return Expected cost of a round, from [0.0, 2.0]
+     */
+    public static double expectedCost(final int[] weights)
+    {
+        final double[] r = expectedResults(weights);
+        return r[PUSH] + 2 * r[LOSS];
+    }
+
+    /**
+     * Calculates the probability of each result of a single round
+     *
+     * @param weights Weights of the agent
+     * @return Probabilities of a round's result, indexed by WIN, PUSH & LOSS
+     */
+    public static double[] expectedResults(final int[] weights)
+    {
+        if (weights.length != ConcreteAgent.SITUATIONS)
+            throw new IllegalArgumentException("Weights do not match the agent's situations");
+        /* Resolve hand states from the highest score down, as hitting only ever increases the score */
+        final double[][] value = new double[HandState.STATES][];
+        for (int state = HandState.STATES - 1; state >= 0; state--)
+        {
+            if (HandState.isBust(state)) continue;
+            final double[] stand = standResults(HandState.softScore(state));
+            if (HandState.isTwentyOne(state)) // Players stand on Blackjack
+            {
+                value[state] = stand;
+                continue;
+            }
+            final int w = weightIndex(state);
+            if (w < 0) continue; // Not reachable with two cards or more
+
+            final double p = hitProbability(weights[w]);
+            final double[] v = new double[3];
+            for (int c = 1; c <= MAX_CARD_VALUE; c++)
+            {
+                final int next = HandState.next(state, c);
+                if (HandState.isBust(next)) v[LOSS] += p * draw[c];
+                else
+                {
+                    final double[] n = value[next];
+                    for (int r = 0; r < v.length; r++)
+                        v[r] += p * draw[c] * n[r];
+                }
+            }
+            for (int r = 0; r < v.length; r++)
+                v[r] += (1 - p) * stand[r];
+            value[state] = v;
+        }
+
+        /* Agent begins their turn with two cards */
+        final double[] results = new double[3];
+        for (int c1 = 1; c1 <= MAX_CARD_VALUE; c1++)
+            for (int c2 = 1; c2 <= MAX_CARD_VALUE; c2++)
+            {
+                final double[] n = value[HandState.next(HandState.next(HandState.EMPTY, c1), c2)];
+                for (int r = 0; r < results.length; r++)
+                    results[r] += draw[c1] * draw[c2] * n[r];
+            }
+        return results;
+    }
+
+    /**
+     * @return Distribution of the dealer's final outcome: [0, 4] stands on 17 to 21, 5 busts
+     */
+    public static double[] dealerOutcomes()
+    {
+        return dealer.clone();
+    }
+
+    /* Results of the agent standing on the specified score, against the dealer's outcome */
+    private static double[] standResults(final int score)
+    {
+        final double[] r = new double[3];
+        r[WIN] = dealer[DEALER_BUST];
+        for (int d = 0; d < DEALER_BUST; d++)
+        {
+            final int dealerScore = MINIMUM_DEALER_SCORE + d;
+            r[score > dealerScore ? WIN : score == dealerScore ? PUSH : LOSS] += dealer[d];
+        }
+        return r;
+    }
+
+    /* Distribution of the dealer's final outcome, given their current hand */
+    private static double[] dealerOutcomes(final int state)
+    {
+        final double[] d = new double[DEALER_OUTCOMES];
+        final int soft = HandState.softScore(state);
+        if (soft >= MINIMUM_DEALER_SCORE)
+        {
+            d[HandState.isBust(state) ? DEALER_BUST : soft - MINIMUM_DEALER_SCORE] = 1.0;
+            return d;
+        }
+        for (int c = 1; c <= MAX_CARD_VALUE; c++)
+        {
+            final double[] n = dealerOutcomes(HandState.next(state, c));
+            for (int o = 0; o < d.length; o++)
+                d[o] += draw[c] * n[o];
+        }
+        return d;
+    }
+}
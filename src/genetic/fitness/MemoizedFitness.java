@@ -0,0 +1,243 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.HeadsUpBlackjack;
+import blackjack.RoundTally;
+import blackjack.player.Player;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Evaluates agents by simulation, remembering each agent's estimate across generations
+ *
+ * Estimates are keyed by the agent's weight vector, so a survivor of selection, or any
+ * agent identical to one previously evaluated, is recognized no matter which object holds
+ * its weights. A new agent plays the full number of rounds. A remembered agent only plays
+ * a top-up of extra rounds, which are merged into its running mean & variance:
+ * survivors cost a fraction of a full evaluation, and their estimates grow more accurate
+ * the longer they survive.
+ *
+ * Costs are reported as the mean cost per round scaled to the full number of rounds,
+ * so remembered and new agents remain comparable. Entries of agents which were not
+ * evaluated since the previous `sweep` are discarded by it, bounding the memo to
+ * roughly one generation.
+ *
+ * The memo is thread-safe. Agents with identical weights evaluated concurrently
+ * share one estimate, so which of them plays the top-up depends on scheduling.
+ *
+ * @param <T> Type of agent to be evaluated
+ */
+public class MemoizedFitness<T extends Player> implements SeededFitness<T>
+{
+    private final Function<? super T, int[]> weights;
+    private final int rounds, topUp, shoeSize;
+    private final float penetration;
+    private final Map<Key, Estimate> memo = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), roundsPlayed = new AtomicLong();
+    private volatile int epoch = 0;
+
+    /**
+     * @param weights Extracts the weight vector of an agent, ex. `ConcreteAgent::getWeights`
+     * @param rounds Number of rounds a new agent plays
+     * @param topUp Number of extra rounds a remembered agent plays, may be zero
+     * @param shoeSize Number of decks to be combined into a shoe
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     */
+    public MemoizedFitness(final Function<? super T, int[]> weights, final int rounds, final int topUp,
+                           final int shoeSize, final float penetration)
+    {
+        if (rounds <= 0) throw new IllegalArgumentException("Number of rounds must be positive and non-zero");
+        if (topUp < 0) throw new IllegalArgumentException("Number of top-up rounds cannot be negative");
+        if (shoeSize <= 0) throw new IllegalArgumentException("Shoe size must be positive and non-zero");
+        validateDomain(penetration, 0.0f, 1.0f);
+        this.weights = requireNonNull(weights);
+        this.rounds = rounds;
+        this.topUp = topUp;
+        this.shoeSize = shoeSize;
+        this.penetration = penetration;
+    }
+
+    /**
+     * Evaluates the fitness (cost) of the specified agent
+     *
+     * @param agent Agent to be evaluated
+     * @param seed Random seed sequence of any rounds played
+     * @return Cost of the agent, lower is better
+     */
+    @Override public double evaluateFitness(final T agent, final long seed)
+    {
+        final Estimate e = memo.computeIfAbsent(new Key(weights.apply(agent).clone()), k -> new Estimate());
+        synchronized (e)
+        {
+            final int play = e.rounds == 0 ? rounds : topUp;
+            if (e.rounds == 0) misses.incrementAndGet();
+            else hits.incrementAndGet();
+            if (play > 0)
+            {
+                final RoundTally t = new HeadsUpBlackjack(agent, shoeSize, seed, penetration).playRounds(play);
+                e.rounds += play;
+                e.sum += t.cost();
+                e.sumSq += t.getPushes() + 4.0 * t.getLosses(); // Per-round costs are 0, 1 or 2
+                roundsPlayed.addAndGet(play);
+            }
+            e.epoch = epoch;
+            return e.mean() * rounds;
+        }
+    }
+
+    /**
+     * @param agentWeights Weight vector of an agent
+     * @return Remembered estimate of the agent, or null if it is not remembered
+     */
+    public Estimate estimate(final int[] agentWeights)
+    {
+        return memo.get(new Key(agentWeights));
+    }
+
+    /**
+     * Discards the estimates of every agent which was not evaluated since the previous sweep
+     *
+     * Intended to be called once per generation, after evaluation.
+     */
+    public void sweep()
+    {
+        final int current = epoch;
+        memo.values().removeIf(e -> e.epoch != current);
+        epoch = current + 1;
+    }
+
+    /**
+     * @return Number of agents remembered
+     */
+    public int size()
+    {
+        return memo.size();
+    }
+
+    /**
+     * @return Number of evaluations which reused a remembered estimate
+     */
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of evaluations of agents which were not remembered
+     */
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return Total number of rounds played
+     */
+    public long getRoundsPlayed()
+    {
+        return roundsPlayed.get();
+    }
+
+    /**
+     * @return String representation of the memo's statistics
+     */
+    @Override public String toString()
+    {
+        final long lookups = getHits() + getMisses();
+        return String.format("Entries: %d   Hit rate: %.3f   Rounds: %d",
+                size(), lookups == 0 ? 0.0 : getHits() / (double)lookups, getRoundsPlayed());
+    }
+
+    /**
+     * Defines the running estimate of one agent's cost per round
+     */
+    public static final class Estimate
+    {
+        private long rounds = 0;
+        private double sum = 0, sumSq = 0;
+        private int epoch;
+
+        /**
+         * @return Number of rounds the estimate is based on
+         */
+        public synchronized long getRounds()
+        {
+            return rounds;
+        }
+
+        /**
+         * @return Mean cost per round
+         */
+        public synchronized double mean()
+        {
+            return rounds == 0 ? Double.NaN : sum / rounds;
+        }
+
+        /**
+         * @return Sample variance of the cost per round
+         */
+        public synchronized double variance()
+        {
+            if (rounds < 2) return Double.NaN;
+            final double m = sum / rounds;
+            return Math.max(0.0, (sumSq - rounds * m * m) / (rounds - 1));
+        }
+
+        /**
+         * @return Standard error of the mean cost per round
+         */
+        public synchronized double standardError()
+        {
+            return Math.sqrt(variance() / rounds);
+        }
+    }
+
+    /* Weight vector with its hash computed once, as it is looked up every generation */
+    private static final class Key
+    {
+        private final int[] weights;
+        private final int hash;
+
+        private Key(final int[] weights)
+        {
+            this.weights = weights;
+            hash = Arrays.hashCode(weights);
+        }
+
+        @Override public boolean equals(final Object o)
+        {
+            return o instanceof Key && hash == ((Key)o).hash && Arrays.equals(weights, ((Key)o).weights);
+        }
+
+        @Override public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
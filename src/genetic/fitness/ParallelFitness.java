@@ -0,0 +1,95 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import genetic.agent.Agent;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Evaluates the fitness of a population across all cores of a ForkJoin pool
+ *
+ * Each agent is seeded via SeedSequence from its generation & population index,
+ * so the costs of a generation are bit-identical regardless of thread count.
+ * No lock is held while evaluating, unlike drawing seeds from a shared Random.
+ *
+ * @param <T> Type of agent to be evaluated
+ */
+public class ParallelFitness<T extends Agent<T>>
+{
+    private final SeededFitness<T> fitness;
+    private final long rootSeed;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param fitness Cost function of an agent
+     * @param rootSeed Seed of the entire run
+     */
+    public ParallelFitness(final SeededFitness<T> fitness, final long rootSeed)
+    {
+        this(fitness, rootSeed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param fitness Cost function of an agent
+     * @param rootSeed Seed of the entire run
+     * @param pool Pool in which agents are evaluated
+     */
+    public ParallelFitness(final SeededFitness<T> fitness, final long rootSeed, final ForkJoinPool pool)
+    {
+        this.fitness = requireNonNull(fitness);
+        this.rootSeed = rootSeed;
+        this.pool = requireNonNull(pool);
+    }
+
+    /**
+     * Evaluates the fitness of every agent of the generation
+     *
+     * The cost function must not share mutable state between agents.
+     * An agent's own state (ex. its decision generator) is only touched by one thread.
+     *
+     * @param agents Agents of the population, indexed by position
+     * @param generation Generation number
+     * @return Costs of each agent, by population index
+     */
+    public double[] evaluate(final List<T> agents, final int generation)
+    {
+        final double[] costs = new double[agents.size()];
+        pool.submit(() -> IntStream.range(0, costs.length).parallel()
+                .forEach(i -> costs[i] = fitness.evaluateFitness(
+                        agents.get(i), SeedSequence.seed(rootSeed, generation, i))))
+                .join();
+        return costs;
+    }
+
+    /**
+     * @param generation Generation number
+     * @param index Index of the agent within the population
+     * @return Seed which the agent is evaluated with
+     */
+    public long seedOf(final int generation, final int index)
+    {
+        return SeedSequence.seed(rootSeed, generation, index);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.HeadsUpBlackjack;
+import genetic.agent.ConcreteAgent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Evaluates a generation by racing: rounds are played in increments, and agents
+ * stop being simulated once their side of the survival cutoff is statistically certain
+ *
+ * After each increment, the running mean & variance of each agent's per-round cost
+ * yield a confidence interval. The cutoff lies between the last surviving agent and
+ * the first discarded agent. Agents whose interval lies entirely above the cutoff are
+ * hopeless, those entirely below are safe: neither is simulated further. Rounds are
+ * thereby focused on agents near the selection boundary.
+ *
+ * Costs are reported as the mean cost scaled to the maximum number of rounds,
+ * so they remain comparable to a full evaluation of every agent.
+ * Each agent plays its own table, seeded via SeedSequence, so results are
+ * independent of thread count.
+ */
+public class RacingFitness
+{
+    private final int maxRounds, increment, shoeSize;
+    private final float survivalRate, penetration;
+    private final double confidence;
+    private final long rootSeed;
+    private final ForkJoinPool pool;
+
+    /* Rounds played during the most recent evaluation */
+    private long roundsPlayed = 0;
+
+    /**
+     * @param maxRounds Maximum number of rounds any agent plays
+     * @param increment Number of rounds played between each elimination check
+     * @param survivalRate Percentage [0.0,1.0] of agents which survive selection
+     * @param confidence Width of the confidence intervals, in standard deviations (ex. 3.0)
+     * @param shoeSize Number of decks to be combined into a shoe
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     * @param rootSeed Seed of the entire run
+     */
+    public RacingFitness(final int maxRounds, final int increment, final float survivalRate, final double confidence,
+                         final int shoeSize, final float penetration, final long rootSeed)
+    {
+        this(maxRounds, increment, survivalRate, confidence, shoeSize, penetration, rootSeed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param maxRounds Maximum number of rounds any agent plays
+     * @param increment Number of rounds played between each elimination check
+     * @param survivalRate Percentage [0.0,1.0] of agents which survive selection
+     * @param confidence Width of the confidence intervals, in standard deviations (ex. 3.0)
+     * @param shoeSize Number of decks to be combined into a shoe
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     * @param rootSeed Seed of the entire run
+     * @param pool Pool in which agents are evaluated
+     */
+    public RacingFitness(final int maxRounds, final int increment, final float survivalRate, final double confidence,
+                         final int shoeSize, final float penetration, final long rootSeed, final ForkJoinPool pool)
+    {
+        if (maxRounds <= 0) throw new IllegalArgumentException("Number of rounds must be positive and non-zero");
+        if (increment <= 0) throw new IllegalArgumentException("Round increment must be positive and non-zero");
+        if (confidence < 0) throw new IllegalArgumentException("Confidence must be non-negative");
+        if (shoeSize <= 0) throw new IllegalArgumentException("Shoe size must be positive and non-zero");
+        this.maxRounds = maxRounds;
+        this.increment = Math.min(increment, maxRounds);
+        this.survivalRate = validateDomain(survivalRate, 0.0f, 1.0f);
+        this.penetration = validateDomain(penetration, 0.0f, 1.0f);
+        this.confidence = confidence;
+        this.shoeSize = shoeSize;
+        this.rootSeed = rootSeed;
+        this.pool = requireNonNull(pool);
+    }
+
+    /**
+     * Evaluates every agent of the generation, racing them against the survival cutoff
+     *
+     * @param agents Agents of the population, indexed by position
+     * @param generation Generation number
+     * @return Costs of each agent by population index, scaled to the maximum number of rounds
+     */
+    public double[] evaluate(final List<ConcreteAgent> agents, final int generation)
+    {
+        final int n = agents.size();
+        final HeadsUpBlackjack[] tables = new HeadsUpBlackjack[n];
+        for (int i = 0; i < n; i++)
+            tables[i] = new HeadsUpBlackjack(agents.get(i), shoeSize,
+                    SeedSequence.seed(rootSeed, generation, i), penetration);
+        /* Per-round costs are 0, 1 or 2, so their sums are exact */
+        final long[] rounds = new long[n], sum = new long[n], sumSq = new long[n];
+        final boolean[] active = new boolean[n];
+        Arrays.fill(active, true);
+        final int survivors = Math.round(n * survivalRate);
+
+        int remaining = n;
+        while (remaining > 0)
+        {
+            pool.submit(() -> IntStream.range(0, n).parallel().filter(i -> active[i]).forEach(i ->
+            {
+                final int r = (int)Math.min(increment, maxRounds - rounds[i]);
+                long s = 0, sq = 0;
+                for (int j = 0; j < r; j++)
+                {
+                    final int cost = 1 - tables[i].playRound(); // shift scores into win: 0, push: 1, loss: 2
+                    s += cost;
+                    sq += cost * cost;
+                }
+                rounds[i] += r;
+                sum[i] += s;
+                sumSq[i] += sq;
+            })).join();
+            remaining = eliminate(rounds, sum, sumSq, active, survivors);
+        }
+
+        roundsPlayed = Arrays.stream(rounds).sum();
+        final double[] costs = new double[n];
+        for (int i = 0; i < n; i++)
+            costs[i] = maxRounds * (sum[i] / (double)rounds[i]);
+        return costs;
+    }
+
+    /**
+     * @return Total number of rounds played during the most recent evaluation
+     */
+    public long getRoundsPlayed()
+    {
+        return roundsPlayed;
+    }
+
+    /**
+     * @return Maximum number of rounds any agent plays
+     */
+    public int getMaxRounds()
+    {
+        return maxRounds;
+    }
+
+    /* Deactivates agents which are certain of their side of the cutoff, returning the number still racing */
+    private int eliminate(final long[] rounds, final long[] sum, final long[] sumSq,
+                          final boolean[] active, final int survivors)
+    {
+        final int n = rounds.length;
+        final double[] mean = new double[n];
+        for (int i = 0; i < n; i++)
+            mean[i] = sum[i] / (double)rounds[i];
+        if (survivors <= 0 || survivors >= n) // Nobody is discarded, so no ranking is needed
+        {
+            Arrays.fill(active, false);
+            return 0;
+        }
+        /* Cutoff lies between the last surviving agent and the first discarded agent */
+        final double[] sorted = mean.clone();
+        Arrays.sort(sorted);
+        final double cutoff = (sorted[survivors - 1] + sorted[survivors]) / 2;
+
+        int remaining = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (!active[i]) continue;
+            final double var = Math.max(0.0, sumSq[i] / (double)rounds[i] - mean[i] * mean[i]);
+            final double halfWidth = confidence * Math.sqrt(var / rounds[i]);
+            if (rounds[i] >= maxRounds || mean[i] - halfWidth > cutoff || mean[i] + halfWidth < cutoff)
+                active[i] = false;
+            else remaining++;
+        }
+        return remaining;
+    }
+}
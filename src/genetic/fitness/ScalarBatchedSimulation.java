@@ -0,0 +1,101 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.player.HandState;
+
+import java.util.NoSuchElementException;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static genetic.agent.ConcreteAgent.weightIndex;
+
+
+/**
+ * Defines a batched simulation which plays each lane's rounds in turn
+ *
+ * Each lane's rounds are played exactly as HeadsUpBlackjack plays them, reading & writing
+ * the lane's shoe, generator states and tally in place within the arrays.
+ */
+final class ScalarBatchedSimulation extends BatchedSimulation
+{
+    ScalarBatchedSimulation(final int lanes, final int shoeSize, final float penetration)
+    {
+        super(lanes, shoeSize, penetration);
+    }
+
+    @Override public void playRounds(final int rounds)
+    {
+        for (int lane = 0; lane < lanes; lane++)
+            for (int r = 0; r < rounds; r++)
+                playRound(lane);
+    }
+
+    private void playRound(final int lane)
+    {
+        final int row = lane * SITUATIONS;
+        // Card deal order must match Blackjack: player, dealer, player, dealer.
+        int player = HandState.next(HandState.EMPTY, deal(lane));
+        int dealer = HandState.next(HandState.EMPTY, deal(lane));
+        player = HandState.next(player, deal(lane));
+        dealer = HandState.next(dealer, deal(lane));
+
+        /* Player's turn, see HeadsUpBlackjack#playerTurn */
+        boolean busted = false;
+        while (!HandState.isTwentyOne(player)
+                && weights[row + weightIndex(player)] > nextInt(decisionS0, decisionS1, lane, Integer.MAX_VALUE))
+        {
+            player = HandState.next(player, deal(lane));
+            if (HandState.isBust(player))
+            {
+                busted = true;
+                break;
+            }
+        }
+
+        if (busted) losses[lane]++;
+        else
+        {
+            int dealerSoft = HandState.softScore(dealer);
+            while (dealerSoft < MINIMUM_DEALER_SCORE)
+            {
+                dealer = HandState.next(dealer, deal(lane));
+                dealerSoft = HandState.softScore(dealer);
+            }
+            final int result = HandState.isBust(dealer) ? 1 : Integer.compare(HandState.softScore(player), dealerSoft);
+            if (result > 0) wins[lane]++;
+            else if (result < 0) losses[lane]++;
+            else pushes[lane]++;
+        }
+        if (dealt[lane] >= shuffleAt) dealt[lane] = 0;
+    }
+
+    /* Deals a card from the lane's shoe, see CompactShoe#dealCode */
+    private int deal(final int lane)
+    {
+        final int d = (int)dealt[lane];
+        if (d >= shoeCards) throw new NoSuchElementException("Shoe is empty");
+        final int base = lane * shoeCards + d;
+        final int i = base + nextInt(shoeS0, shoeS1, lane, shoeCards - d);
+        final long value = shoes[i];
+        shoes[i] = shoes[base];
+        shoes[base] = value;
+        dealt[lane] = d + 1;
+        return (int)value;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import util.FastRandom;
+
+
+/**
+ * Derives independent random seeds for each (generation, agent index) pair
+ *
+ * Seeds are a pure function of their coordinates, rather than drawn one-by-one
+ * from a shared generator. Therefore agents may be evaluated in any order, on
+ * any number of threads, and each agent still receives the same seed.
+ */
+public final class SeedSequence
+{
+    /* Golden ratio increment, as used by SplittableRandom */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private SeedSequence() { }
+
+    /**
+     * @param root Seed of the entire run
+     * @param generation Generation number
+     * @param index Index of the agent within the population
+     * @return Seed unique to the agent of the specified generation
+     */
+    public static long seed(final long root, final int generation, final int index)
+    {
+        final long stream = FastRandom.mix64(root + GOLDEN_GAMMA * (generation + 1L));
+        return FastRandom.mix64(stream + GOLDEN_GAMMA * (index + 1L));
+    }
+}
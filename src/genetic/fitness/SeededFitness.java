@@ -0,0 +1,37 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+/**
+ * Defines a cost function whose only source of randomness is the specified seed
+ *
+ * @param <T> Type of agent to be evaluated
+ */
+@FunctionalInterface
+public interface SeededFitness<T>
+{
+    /**
+     * Evaluates the fitness (cost) of the specified agent
+     *
+     * @param agent Agent to be evaluated
+     * @param seed Random seed sequence of the evaluation
+     * @return Cost of the agent, lower is better
+     */
+    double evaluateFitness(final T agent, final long seed);
+}
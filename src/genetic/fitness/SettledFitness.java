@@ -0,0 +1,130 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.card.Card;
+import blackjack.card.CompactShoe;
+import genetic.agent.ConcreteAgent;
+
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Evaluates agents by playing their turns, and settling each round against the dealer by expectation
+ *
+ * Rather than dealing the dealer's hand card by card, a standing agent's round is resolved
+ * by the expected cost against the dealer's outcome distribution, given their upcard and the
+ * cards remaining in the shoe. This removes the dealer's luck from the cost entirely.
+ *
+ * The dealer's hole card and hits are never dealt, so the shoe depletes slightly slower than
+ * at a real table. Costs are comparable to HeadsUpBlackjack over the same number of rounds.
+ *
+ * This evaluator is not thread-safe, use one instance per thread.
+ */
+public class SettledFitness implements SeededFitness<ConcreteAgent>
+{
+    private final int decks, rounds;
+    private final float penetration;
+    private final DealerOutcomes dealer;
+    /* Number of cards of each value remaining in the shoe */
+    private final int[] counts = new int[11];
+
+    /**
+     * @param decks Number of decks to be combined into a shoe
+     * @param rounds Number of rounds each agent plays
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     * @param dealer Table of the dealer's outcomes, shared across agents
+     */
+    public SettledFitness(final int decks, final int rounds, final float penetration, final DealerOutcomes dealer)
+    {
+        if (decks <= 0) throw new IllegalArgumentException("Shoe size must be positive and non-zero");
+        if (rounds <= 0) throw new IllegalArgumentException("Number of rounds must be positive and non-zero");
+        this.decks = decks;
+        this.rounds = rounds;
+        this.penetration = validateDomain(penetration, 0.0f, 1.0f);
+        this.dealer = requireNonNull(dealer);
+    }
+
+    /**
+     * @param agent Agent to be evaluated
+     * @param seed Random seed sequence of the shoe
+     * @return Expected cost of the agent over the rounds, see RoundTally#cost
+     */
+    @Override public double evaluateFitness(final ConcreteAgent agent, final long seed)
+    {
+        final CompactShoe shoe = new CompactShoe(decks, seed);
+        refill();
+        double cost = 0;
+        for (int r = 0; r < rounds; r++)
+        {
+            agent.accept(Card.fromCode(deal(shoe)));
+            final int upcard = Card.faceValue(deal(shoe));
+            agent.accept(Card.fromCode(deal(shoe)));
+
+            if (playerTurn(agent, shoe))
+                cost += DealerOutcomes.expectedCost(agent.getSoftScore(), dealer.finite(upcard, counts));
+            else cost += 2;
+
+            agent.reset();
+            shoe.endRound();
+            if (shoe.penetration() >= penetration)
+            {
+                shoe.shuffle();
+                refill();
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * @return Table of the dealer's outcomes
+     */
+    public DealerOutcomes getDealerOutcomes()
+    {
+        return dealer;
+    }
+
+    /* Performs the agent's turn, see Blackjack#playerTurn. Returns false if the agent busted */
+    private boolean playerTurn(final ConcreteAgent agent, final CompactShoe shoe)
+    {
+        while (!agent.hasBlackjack() && agent.hit())
+        {
+            agent.accept(Card.fromCode(deal(shoe)));
+            if (agent.hasBusted()) return false;
+        }
+        return true;
+    }
+
+    /* Deals a card, removing it from the remaining counts */
+    private int deal(final CompactShoe shoe)
+    {
+        final int code = shoe.dealCode();
+        counts[Card.faceValue(code)]--;
+        return code;
+    }
+
+    /* Counts every card of a freshly shuffled shoe as remaining */
+    private void refill()
+    {
+        for (int v = 1; v < counts.length; v++)
+            counts[v] = (v == counts.length - 1 ? 16 : 4) * decks;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.player.HandState;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+
+import static genetic.agent.ConcreteAgent.hitProbability;
+import static genetic.agent.ConcreteAgent.weightIndex;
+import static genetic.fitness.InfiniteDeckFitness.LOSS;
+import static genetic.fitness.InfiniteDeckFitness.PUSH;
+import static genetic.fitness.InfiniteDeckFitness.WIN;
+
+
+/**
+ * Evaluates the exact expected cost of an agent's policy, dealt from a finite shoe
+ *
+ * Unlike InfiniteDeckFitness, every card dealt is removed from the shoe,
+ * so both the agent's and the dealer's draws depend on the cards already seen.
+ * The evaluation recurses over the remaining composition of a freshly shuffled shoe.
+ *
+ * A composition (count of each card value) is encoded into a single long.
+ * The dealer's outcome for a composition is agent-independent, and is cached across agents.
+ * The agent's continuation for a composition is cached for the current agent only.
+ * Since only the agent's cards have been removed when their continuation is evaluated,
+ * the composition alone determines the agent's hand.
+ *
+ * This evaluator is not thread-safe, use one instance per thread.
+ */
+public class ShoeFitness implements SeededFitness<ConcreteAgent>
+{
+    private final int rounds;
+    private final long fullShoe;
+    private final CompositionCache dealerCache, agentCache;
+
+    /* Current agent's weights, referenced by the recursion */
+    private int[] weights;
+
+    /* Card values range from ace (1) to ten-valued cards (10) */
+    private static final int RANKS = 10;
+    /* Ace through nine are 6 bits each, ten-valued cards are 8 bits: 62 bits total */
+    private static final int RANK_BITS = 6, TEN_BITS = 8;
+    private static final int TEN = RANKS - 1;
+    /* Largest shoe such that each count fits within its bits */
+    public static final int MAX_DECKS = 15;
+
+    private static final int MINIMUM_DEALER_SCORE = 17;
+    private static final int DEALER_OUTCOMES = Player.MAXIMUM_SCORE - MINIMUM_DEALER_SCORE + 2;
+    private static final int DEALER_BUST = DEALER_OUTCOMES - 1;
+    private static final int DEFAULT_CACHE_CAPACITY = 1 << 16;
+
+    public ShoeFitness(final int decks) { this(decks, 1, DEFAULT_CACHE_CAPACITY); }
+
+    /**
+     * @param decks Number of decks combined into the shoe
+     * @param rounds Number of rounds the expected cost is scaled to,
+     *               so costs are comparable to simulating that many rounds
+     * @param cacheCapacity Maximum entries retained by each of the dealer & agent caches
+     */
+    public ShoeFitness(final int decks, final int rounds, final int cacheCapacity)
+    {
+        if (decks < 1 || decks > MAX_DECKS)
+            throw new IllegalArgumentException("Number of decks must be within [1, " + MAX_DECKS + "]");
+        if (rounds <= 0) throw new IllegalArgumentException("Number of rounds must be positive and non-zero");
+        this.rounds = rounds;
+        long shoe = 0;
+        for (int r = 0; r < RANKS; r++)
+            shoe += (r == TEN ? 16L : 4L) * decks << shift(r);
+        fullShoe = shoe;
+        dealerCache = new CompositionCache(cacheCapacity);
+        agentCache = new CompositionCache(cacheCapacity);
+    }
+
+    /**
+     * The exact cost requires no randomness, therefore the seed is ignored
+     *
+     * @param agent Agent to be evaluated
+     * @param seed Random seed sequence (ignored)
+     * @return Expected cost of the agent, scaled to the number of rounds
+     */
+    @Override public double evaluateFitness(final ConcreteAgent agent, final long seed)
+    {
+        return evaluateFitness(agent);
+    }
+
+    /**
+     * @param agent Agent to be evaluated
+     * @return Expected cost of the agent, scaled to the number of rounds
+     */
+    public double evaluateFitness(final ConcreteAgent agent)
+    {
+        return rounds * expectedCost(agent.getWeights());
+    }
+
+    /**
+     * Calculates the expected cost of the first round dealt from a freshly shuffled shoe
+     *
+     * Results are shifted into win: 0, push: 1, loss: 2.
+     *
+     * @param weights Weights of the agent
+     * @return Expected cost of a round, from [0.0, 2.0]
+     */
+    public double expectedCost(final int[] weights)
+    {
+        final double[] r = expectedResults(weights);
+        return r[PUSH] + 2 * r[LOSS];
+    }
+
+    /**
+     * Calculates the probability of each result of the first round dealt from a freshly shuffled shoe
+     *
+     * @param weights Weights of the agent
+     * @return Probabilities of a round's result, indexed by WIN, PUSH & LOSS
+     */
+    public double[] expectedResults(final int[] weights)
+    {
+        if (weights.length != ConcreteAgent.SITUATIONS)
+            throw new IllegalArgumentException("Weights do not match the agent's situations");
+        this.weights = weights;
+        agentCache.clear(); // Continuations are only valid for the agent that produced them
+
+        /* Agent begins their turn with two cards */
+        final double[] results = new double[3];
+        final int total = cards(fullShoe);
+        for (int r1 = 0; r1 < RANKS; r1++)
+        {
+            final int n1 = count(fullShoe, r1);
+            final long afterFirst = fullShoe - (1L << shift(r1));
+            for (int r2 = 0; r2 < RANKS; r2++)
+            {
+                final int n2 = count(afterFirst, r2);
+                if (n2 == 0) continue;
+                final double p = n1 / (double)total * n2 / (total - 1);
+                final long comp = afterFirst - (1L << shift(r2));
+                final double[] v = agentResults(comp, HandState.next(HandState.next(HandState.EMPTY, value(r1)), value(r2)));
+                for (int i = 0; i < results.length; i++)
+                    results[i] += p * v[i];
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return Cache of the dealer's outcome per composition, shared across agents
+     */
+    public CompositionCache getDealerCache()
+    {
+        return dealerCache;
+    }
+
+    /**
+     * @return Cache of the agent's continuation per composition, reset for each agent
+     */
+    public CompositionCache getAgentCache()
+    {
+        return agentCache;
+    }
+
+    /* Results of the agent's turn onwards, given the remaining composition and the agent's hand */
+    private double[] agentResults(final long comp, final int state)
+    {
+        final double[] cached = agentCache.get(comp);
+        if (cached != null) return cached;
+
+        final double[] stand = standResults(HandState.softScore(state), dealerOutcomes(comp));
+        if (HandState.isTwentyOne(state)) // Players stand on Blackjack
+            return agentCache.put(comp, stand);
+
+        final double p = hitProbability(weights[weightIndex(state)]);
+        final double[] v = new double[3];
+        if (p > 0)
+        {
+            final int total = cards(comp);
+            for (int r = 0; r < RANKS; r++)
+            {
+                final int n = count(comp, r);
+                if (n == 0) continue;
+                final double q = p * n / total;
+                final int next = HandState.next(state, value(r));
+                if (HandState.isBust(next)) v[LOSS] += q;
+                else
+                {
+                    final double[] c = agentResults(comp - (1L << shift(r)), next);
+                    for (int i = 0; i < v.length; i++)
+                        v[i] += q * c[i];
+                }
+            }
+        }
+        for (int i = 0; i < v.length; i++)
+            v[i] += (1 - p) * stand[i];
+        return agentCache.put(comp, v);
+    }
+
+    /* Distribution of the dealer's final outcome, dealing their hand from the specified composition */
+    private double[] dealerOutcomes(final long comp)
+    {
+        final double[] cached = dealerCache.get(comp);
+        if (cached != null) return cached;
+        final double[] d = new double[DEALER_OUTCOMES];
+        dealerOutcomes(comp, HandState.EMPTY, 1.0, d);
+        return dealerCache.put(comp, d);
+    }
+
+    /* Accumulates the dealer's outcomes, weighted by the probability of reaching the current hand */
+    private static void dealerOutcomes(final long comp, final int state, final double p, final double[] d)
+    {
+        final int soft = HandState.softScore(state);
+        if (soft >= MINIMUM_DEALER_SCORE)
+        {
+            d[HandState.isBust(state) ? DEALER_BUST : soft - MINIMUM_DEALER_SCORE] += p;
+            return;
+        }
+        final int total = cards(comp);
+        for (int r = 0; r < RANKS; r++)
+        {
+            final int n = count(comp, r);
+            if (n > 0)
+                dealerOutcomes(comp - (1L << shift(r)), HandState.next(state, value(r)), p * n / total, d);
+        }
+    }
+
+    /* Results of the agent standing on the specified score, against the dealer's outcome */
+    private static double[] standResults(final int score, final double[] dealer)
+    {
+        final double[] r = new double[3];
+        r[WIN] = dealer[DEALER_BUST];
+        for (int d = 0; d < DEALER_BUST; d++)
+        {
+            final int dealerScore = MINIMUM_DEALER_SCORE + d;
+            r[score > dealerScore ? WIN : score == dealerScore ? PUSH : LOSS] += dealer[d];
+        }
+        return r;
+    }
+
+    /* Bit offset of the specified rank within a composition */
+    private static int shift(final int rank)
+    {
+        return rank * RANK_BITS;
+    }
+
+    /* Number of cards of the specified rank remaining in the composition */
+    private static int count(final long comp, final int rank)
+    {
+        return (int)(comp >>> shift(rank)) & ((1 << (rank == TEN ? TEN_BITS : RANK_BITS)) - 1);
+    }
+
+    /* Number of cards remaining in the composition */
+    private static int cards(final long comp)
+    {
+        int total = 0;
+        for (int r = 0; r < RANKS; r++)
+            total += count(comp, r);
+        return total;
+    }
+
+    /* Point value of the specified rank, where aces count as 1 */
+    private static int value(final int rank)
+    {
+        return rank + 1;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.fitness;
+
+import blackjack.RoundTally;
+import blackjack.TableBlackjack;
+import blackjack.player.Player;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Evaluates the fitness of a population by seating several agents at each table
+ *
+ * Consecutive agents of the population share a table of up to seven seats, and the tables
+ * play in parallel, each seeded via SeedSequence from its generation & table index.
+ * The dealer's hand and the shoe are shared by a table's seats, so dealer work per
+ * agent-round falls by the number of seats.
+ *
+ * Sharing a dealer does not bias rankings. Cards are exchangeable, so every seat faces the
+ * same distribution of dealer outcomes as a heads-up agent does: an agent's expected cost
+ * is unchanged. Seats only differ by which cards earlier seats removed from the shoe, and
+ * the seating rotates every round, so over a multiple of the table size every agent has
+ * occupied every seat equally often. What a table does share is its luck: agents at one
+ * table face correlated dealer hands, which makes comparisons within a table less noisy
+ * and comparisons across tables no noisier than heads-up evaluation.
+ */
+public class TableFitness
+{
+    private final int seats, rounds, shoeSize;
+    private final float penetration;
+    private final long rootSeed;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param seats Number of agents seated at each table [1,7]
+     * @param rounds Number of rounds each agent plays, a multiple of the number of seats
+     * @param shoeSize Number of decks to be combined into a shoe
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     * @param rootSeed Seed of the entire run
+     */
+    public TableFitness(final int seats, final int rounds, final int shoeSize, final float penetration,
+                        final long rootSeed)
+    {
+        this(seats, rounds, shoeSize, penetration, rootSeed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param seats Number of agents seated at each table [1,7]
+     * @param rounds Number of rounds each agent plays, a multiple of the number of seats
+     * @param shoeSize Number of decks to be combined into a shoe
+     * @param penetration Percentage [0.0,1.0] of how many cards of the shoe have
+     *                    been dealt out before a shuffle should take place.
+     * @param rootSeed Seed of the entire run
+     * @param pool Pool in which tables are played
+     */
+    public TableFitness(final int seats, final int rounds, final int shoeSize, final float penetration,
+                        final long rootSeed, final ForkJoinPool pool)
+    {
+        if (seats <= 0 || seats > TableBlackjack.MAXIMUM_SEATS)
+            throw new IllegalArgumentException("A table seats between one and seven agents");
+        if (rounds <= 0 || rounds % seats != 0)
+            throw new IllegalArgumentException("Number of rounds must be a positive multiple of the number of seats");
+        this.seats = seats;
+        this.rounds = rounds;
+        this.shoeSize = shoeSize;
+        this.penetration = validateDomain(penetration, 0.0f, 1.0f);
+        this.rootSeed = rootSeed;
+        this.pool = requireNonNull(pool);
+    }
+
+    /**
+     * Evaluates the fitness of every agent of the generation
+     *
+     * The last table seats the remaining agents, should the population not divide evenly.
+     * Its rounds are then not a multiple of its size, leaving a rotation bias of at most one round.
+     *
+     * @param agents Agents of the population, indexed by position
+     * @param generation Generation number
+     * @return Costs of each agent, by population index
+     */
+    public double[] evaluate(final List<? extends Player> agents, final int generation)
+    {
+        final double[] costs = new double[agents.size()];
+        final int tables = (costs.length + seats - 1) / seats;
+        pool.submit(() -> IntStream.range(0, tables).parallel().forEach(t ->
+        {
+            final int first = t * seats, size = Math.min(seats, costs.length - first);
+            final Player[] seated = new Player[size];
+            for (int s = 0; s < size; s++)
+                seated[s] = agents.get(first + s);
+            final RoundTally[] tallies = new TableBlackjack(seated, shoeSize,
+                    SeedSequence.seed(rootSeed, generation, t), penetration).playRounds(rounds);
+            for (int s = 0; s < size; s++)
+                costs[first + s] = tallies[s].cost();
+        })).join();
+        return costs;
+    }
+
+    /**
+     * @return Number of agents seated at each table
+     */
+    public int getSeats()
+    {
+        return seats;
+    }
+}
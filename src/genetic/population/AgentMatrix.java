@@ -0,0 +1,467 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.population;
+
+import genetic.agent.ConcreteAgent;
+import genetic.agent.MatrixAgent;
+import genetic.fitness.SeedSequence;
+import genetic.fitness.SeededFitness;
+import util.CounterRandom;
+import util.FastRandom;
+import util.Xoroshiro128;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.DoubleSummaryStatistics;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Defines a population of agents stored as a struct of arrays
+ *
+ * All weights live in one contiguous row-major matrix (agent × situation), and all
+ * costs in a parallel array. There are no per-agent objects: agents are only
+ * materialized as MatrixAgent views when they play. Selection, crossover and mutation
+ * operate directly on rows, so breeding a generation creates no objects per child.
+ *
+ * The matrix is stored on the heap by default. Large populations may instead be stored
+ * off-heap, optionally memory-mapped to a file, see `offHeap` and `mapped`.
+ */
+public class AgentMatrix implements AutoCloseable
+{
+    private final int agents;
+    private final MatrixStorage storage;
+
+    /**
+     * @param agents Number of agents in the population
+     */
+    public AgentMatrix(final int agents)
+    {
+        this(validateSize(agents), new HeapStorage(agents, SITUATIONS));
+    }
+
+    private AgentMatrix(final int agents, final MatrixStorage storage)
+    {
+        this.agents = agents;
+        this.storage = storage;
+    }
+
+    /**
+     * Constructs a matrix stored outside of the Java heap
+     *
+     * @param agents Number of agents in the population
+     * @return Matrix in off-heap memory
+     */
+    public static AgentMatrix offHeap(final int agents)
+    {
+        return new AgentMatrix(validateSize(agents), BufferStorage.direct(agents, SITUATIONS));
+    }
+
+    /**
+     * Constructs a matrix stored in a memory-mapped file
+     *
+     * If the file already holds a matrix of the same size, its contents are resumed,
+     * see `persistedGeneration`. Contents are persisted on every `flush`, and the file
+     * is marked as inconsistent from the first mutation that follows until the next flush.
+     *
+     * @param file File backing the matrix, created if absent
+     * @param agents Number of agents in the population
+     * @return Matrix in the memory-mapped file
+     * @throws IllegalStateException if the file's matrix was mutated after its last flush, ex. by a crashed run
+     */
+    public static AgentMatrix mapped(final Path file, final int agents)
+    {
+        return new AgentMatrix(validateSize(agents), BufferStorage.mapped(requireNonNull(file), agents, SITUATIONS));
+    }
+
+    /**
+     * @return Number of agents in the population
+     */
+    public int size()
+    {
+        return agents;
+    }
+
+    /**
+     * @param index Index of the weight, [agent][situation] in row-major order, see `offset`
+     * @return Weight at the index
+     */
+    public int weight(final int index)
+    {
+        return storage.getWeight(index);
+    }
+
+    /**
+     * @param index Index of the weight, [agent][situation] in row-major order, see `offset`
+     * @param weight Weight to be stored at the index
+     */
+    public void setWeight(final int index, final int weight)
+    {
+        storage.setWeight(index, weight);
+    }
+
+    /**
+     * @param agent Index of the agent
+     * @return Cost of the agent, NaN if it has yet to be evaluated
+     */
+    public double fitness(final int agent)
+    {
+        return storage.getFitness(agent);
+    }
+
+    /**
+     * @param agent Index of the agent
+     * @param cost Cost of the agent
+     */
+    public void setFitness(final int agent, final double cost)
+    {
+        storage.setFitness(agent, cost);
+    }
+
+    /**
+     * @return Summary statistics of every agent's cost
+     */
+    public DoubleSummaryStatistics fitnessStatistics()
+    {
+        final DoubleSummaryStatistics dss = new DoubleSummaryStatistics();
+        for (int i = 0; i < agents; i++)
+            dss.accept(storage.getFitness(i));
+        return dss;
+    }
+
+    /**
+     * Persists the matrix, if it is backed by a file
+     *
+     * @param generation Generation number the matrix belongs to
+     */
+    public void flush(final int generation)
+    {
+        storage.flush(generation);
+    }
+
+    /**
+     * @return Generation number of the last flush to the backing file,
+     *         or -1 if there was none or the matrix has been mutated since
+     */
+    public int persistedGeneration()
+    {
+        return storage.persistedGeneration();
+    }
+
+    /**
+     * Releases off-heap memory, unmapping the backing file if there is one
+     *
+     * The matrix is not flushed. Closing is idempotent, and a closed matrix throws rather than accessing released memory.
+     */
+    @Override public void close()
+    {
+        storage.close();
+    }
+
+    /**
+     * @param agent Index of the agent
+     * @return Index of the agent's first weight within the weights
+     */
+    public int offset(final int agent)
+    {
+        return agent * SITUATIONS;
+    }
+
+    /**
+     * Randomizes the weights of every agent, see ConcreteAgent#randomizeWeights
+     *
+     * Every agent becomes unevaluated, its cost NaN.
+     *
+     * @param generator Random seed sequence
+     */
+    public void randomizeWeights(final Random generator)
+    {
+        for (int i = 0; i < agents * SITUATIONS; i++)
+            storage.setWeight(i, generator.nextInt(Integer.MAX_VALUE));
+        for (int i = 0; i < agents; i++)
+            storage.setFitness(i, Double.NaN);
+    }
+
+    /**
+     * Evaluates the fitness of every agent across all cores of a ForkJoin pool
+     *
+     * Each agent is played by a MatrixAgent view, whose decisions and table are seeded
+     * via SeedSequence, so costs are bit-identical regardless of thread count.
+     *
+     * @param f Cost function of an agent, seeded with the agent's table seed
+     * @param generation Generation number
+     * @param rootSeed Seed of the entire run
+     * @param pool Pool in which agents are evaluated
+     */
+    public void evaluate(final SeededFitness<MatrixAgent> f, final int generation,
+                         final long rootSeed, final ForkJoinPool pool)
+    {
+        requireNonNull(f);
+        pool.submit(() -> IntStream.range(0, agents).parallel().forEach(i ->
+        {
+            final long seed = SeedSequence.seed(rootSeed, generation, i);
+            storage.setFitness(i, f.evaluateFitness(new MatrixAgent(this, i, new Xoroshiro128(FastRandom.mix64(seed))), seed));
+        })).join();
+    }
+
+    /**
+     * Moves the agents with the lowest costs to the front of the population
+     *
+     * Only which agents survive is determined, not their order: survivors keep their relative
+     * order, as do the discarded agents. Selection is O(n), and parallel for large populations,
+     * see `best` to report the agents with the lowest costs in order.
+     *
+     * @param survivors Number of agents which survive selection
+     */
+    public void select(final int survivors)
+    {
+        if (survivors < 0 || survivors > agents)
+            throw new IllegalArgumentException("Number of survivors must be within the population");
+        final BitSet survives = new BitSet(agents);
+        for (final int i : Selection.lowest(costs(), survivors))
+            survives.set(i);
+        final int[] order = new int[agents];
+        for (int i = 0, front = 0, back = survivors; i < agents; i++)
+            order[survives.get(i) ? front++ : back++] = i;
+        reorder(order);
+    }
+
+    /**
+     * Finds the agents with the lowest costs, without reordering the population
+     *
+     * @param k Number of agents to be reported
+     * @return Indices of the k agents with the lowest costs, lowest first
+     */
+    public int[] best(final int k)
+    {
+        if (k < 0 || k > agents)
+            throw new IllegalArgumentException("Number of agents must be within the population");
+        return Selection.best(costs(), k);
+    }
+
+    /**
+     * Replaces every non-surviving agent with a child of two survivors
+     *
+     * Survivors must occupy the front of the population, see `select`.
+     * Parents are paired by two passes of a fischer-yates shuffle of the survivors,
+     * consecutive survivors of each pass forming a pair. Each pair produces one child
+     * via uniform crossover, which is then uniformly mutated.
+     *
+     * @param survivors Number of agents at the front of the population which survive
+     * @param mutationRate Percentage [0.0,1.0] of a child's weights which are randomized
+     * @param generator Random seed sequence
+     */
+    public void repopulate(final int survivors, final float mutationRate, final Random generator)
+    {
+        if (survivors < 2 || survivors > agents)
+            throw new IllegalArgumentException("At least two survivors are needed to repopulate");
+        validateDomain(mutationRate, 0.0f, 1.0f);
+        final int[] parents = new int[survivors];
+        for (int i = 0; i < survivors; i++)
+            parents[i] = i;
+
+        int child = survivors, pair = parents.length;
+        while (child < agents)
+        {
+            if (pair + 1 >= parents.length) // Pass exhausted, shuffle the survivors for the next pass
+            {
+                shuffle(parents, generator);
+                pair = 0;
+            }
+            crossover(parents[pair], parents[pair + 1], child, generator);
+            mutate(child, mutationRate, generator);
+            pair += 2;
+            child++;
+        }
+    }
+
+    /**
+     * Replaces every non-surviving agent with a child of two survivors, breeding in parallel
+     *
+     * Parents are paired as in `repopulate`, by a generator seeded with the specified seed.
+     * Pairing is cheap and remains sequential. Each child is then bred on any thread, with
+     * its own counter-based generator keyed by the seed & the child's index, therefore the
+     * population is identical regardless of the number of threads.
+     *
+     * @param survivors Number of agents at the front of the population which survive
+     * @param mutationRate Percentage [0.0,1.0] of a child's weights which are randomized
+     * @param seed Seed of this generation's breeding, ex. drawn from the run's generator
+     * @param pool Pool in which children are bred
+     */
+    public void repopulate(final int survivors, final float mutationRate, final long seed, final ForkJoinPool pool)
+    {
+        if (survivors < 2 || survivors > agents)
+            throw new IllegalArgumentException("At least two survivors are needed to repopulate");
+        validateDomain(mutationRate, 0.0f, 1.0f);
+        final Random pairing = new Xoroshiro128(seed);
+        final int[] parents = new int[survivors];
+        for (int i = 0; i < survivors; i++)
+            parents[i] = i;
+
+        /* Consecutive entries of `mates` are the parents of each child */
+        final int[] mates = new int[2 * (agents - survivors)];
+        for (int m = 0, pair = parents.length; m < mates.length; m += 2, pair += 2)
+        {
+            if (pair + 1 >= parents.length)
+            {
+                shuffle(parents, pairing);
+                pair = 0;
+            }
+            mates[m] = parents[pair];
+            mates[m + 1] = parents[pair + 1];
+        }
+
+        pool.submit(() -> IntStream.range(survivors, agents).parallel().forEach(child ->
+        {
+            final Random generator = new CounterRandom(SeedSequence.seed(seed, 0, child));
+            final int m = 2 * (child - survivors);
+            crossover(mates[m], mates[m + 1], child, generator);
+            mutate(child, mutationRate, generator);
+        })).join();
+    }
+
+    /**
+     * Uniform crossover, each of the child's weights is inherited from either parent
+     *
+     * @param parentA Index of the first parent
+     * @param parentB Index of the second parent
+     * @param child Index of the child, overwritten by the crossover
+     * @param generator Random seed sequence
+     */
+    public void crossover(final int parentA, final int parentB, final int child, final Random generator)
+    {
+        final int a = offset(parentA), b = offset(parentB), c = offset(child);
+        long bits = 0;
+        for (int s = 0; s < SITUATIONS; s++)
+        {
+            if ((s & 63) == 0) bits = generator.nextLong();
+            storage.setWeight(c + s, storage.getWeight((bits & 1L << (s & 63)) != 0 ? a + s : b + s));
+        }
+        storage.setFitness(child, Double.NaN);
+    }
+
+    /**
+     * Uniform mutation, each of the agent's weights is randomized with the specified probability
+     *
+     * @param agent Index of the agent
+     * @param rate Percentage [0.0,1.0] of weights which are randomized
+     * @param generator Random seed sequence
+     */
+    public void mutate(final int agent, final float rate, final Random generator)
+    {
+        final int o = offset(agent);
+        for (int s = 0; s < SITUATIONS; s++)
+            if (generator.nextFloat() < rate)
+                storage.setWeight(o + s, generator.nextInt(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Materializes an agent as a fully-fledged ConcreteAgent, ex. for reporting
+     *
+     * @param agent Index of the agent
+     * @param seed Random seed sequence of the agent's decisions
+     * @return New agent holding a copy of the agent's weights
+     */
+    public ConcreteAgent toConcreteAgent(final int agent, final long seed)
+    {
+        final ConcreteAgent ca = new ConcreteAgent(seed);
+        final int[] w = ca.getWeights();
+        for (int s = 0, o = offset(agent); s < SITUATIONS; s++)
+            w[s] = storage.getWeight(o + s);
+        return ca;
+    }
+
+    /* Re-orders rows in-place, following each cycle, such that row `i` becomes the row previously at `order[i]` */
+    void reorder(final int[] order)
+    {
+        final BitSet placed = new BitSet(agents);
+        final int[] row = new int[SITUATIONS];
+        for (int start = 0; start < agents; start++)
+        {
+            if (placed.get(start) || order[start] == start) continue;
+            /* Lift the first row of the cycle out, then shift each row of the cycle into place */
+            readRow(start, row);
+            final double cost = storage.getFitness(start);
+            int i = start;
+            while (order[i] != start)
+            {
+                moveRow(order[i], i);
+                placed.set(i);
+                i = order[i];
+            }
+            writeRow(i, row);
+            storage.setFitness(i, cost);
+            placed.set(i);
+        }
+    }
+
+    /* Fischer-yates shuffle */
+    private static void shuffle(final int[] values, final Random generator)
+    {
+        for (int i = values.length - 1; i > 0; i--)
+        {
+            final int j = generator.nextInt(i + 1);
+            final int t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+    }
+
+    private double[] costs()
+    {
+        final double[] costs = new double[agents];
+        for (int i = 0; i < agents; i++)
+            costs[i] = storage.getFitness(i);
+        return costs;
+    }
+
+    private void moveRow(final int from, final int to)
+    {
+        final int f = offset(from), t = offset(to);
+        for (int s = 0; s < SITUATIONS; s++)
+            storage.setWeight(t + s, storage.getWeight(f + s));
+        storage.setFitness(to, storage.getFitness(from));
+    }
+
+    private void readRow(final int agent, final int[] row)
+    {
+        for (int s = 0, o = offset(agent); s < SITUATIONS; s++)
+            row[s] = storage.getWeight(o + s);
+    }
+
+    private void writeRow(final int agent, final int[] row)
+    {
+        for (int s = 0, o = offset(agent); s < SITUATIONS; s++)
+            storage.setWeight(o + s, row[s]);
+    }
+
+    private static int validateSize(final int agents)
+    {
+        if (agents <= 0) throw new IllegalArgumentException("Population size must be positive and non-zero");
+        if ((long)agents * SITUATIONS > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Population is too large to be stored in one matrix");
+        return agents;
+    }
+}
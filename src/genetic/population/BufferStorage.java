@@ -0,0 +1,258 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.population;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+
+/**
+ * Defines storage of an AgentMatrix outside of the Java heap
+ *
+ * Memory is either anonymous (direct) or a memory-mapped file. Neither is scanned
+ * nor copied by the garbage collector, so pause times do not scale with population size.
+ *
+ * A mapped file outlives the JVM, but weights & costs are mutated in place, so a crash
+ * may leave any mixture of two generations on disk. Therefore the header's generation is
+ * cleared (-1) and forced to disk before the first mutation following a flush, and is only
+ * written again once `flush` has forced every weight & cost. A file whose generation is
+ * cleared is never resumed, see `mapped`.
+ *
+ * File layout, in native byte order: [magic][version][agents][situations][generation] [weights...] [costs...]
+ */
+class BufferStorage implements MatrixStorage
+{
+    private ByteBuffer buffer;
+    private IntBuffer weights;
+    private DoubleBuffer fitness;
+
+    /* Indicates the contents have been mutated since the last flush, and the header says so */
+    private volatile boolean dirty = false;
+    /* Indicates the memory has been released, see `close` */
+    private volatile boolean closed = false;
+
+    private static final int MAGIC = 0x424A4D58; // "BJMX"
+    private static final int VERSION = 1;
+    private static final int GENERATION_OFFSET = 4 * Integer.BYTES;
+    /* Header is padded so that the costs that follow the weights remain 8-byte aligned */
+    private static final int HEADER_BYTES = 8 * Integer.BYTES;
+
+    private BufferStorage(final ByteBuffer buffer, final int agents, final int situations)
+    {
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        final int weightBytes = agents * situations * Integer.BYTES;
+        weights = slice(HEADER_BYTES, weightBytes).asIntBuffer();
+        fitness = slice(HEADER_BYTES + align(weightBytes), agents * Double.BYTES).asDoubleBuffer();
+    }
+
+    /**
+     * @param agents Number of agents
+     * @param situations Number of weights per agent
+     * @return Storage in anonymous off-heap memory
+     */
+    static BufferStorage direct(final int agents, final int situations)
+    {
+        final BufferStorage s = new BufferStorage(ByteBuffer.allocateDirect(bytes(agents, situations)), agents, situations);
+        s.writeHeader(agents, situations);
+        return s;
+    }
+
+    /**
+     * Maps the storage to the specified file, resuming its contents if it is a matching matrix
+     *
+     * @param file File backing the storage, created if absent
+     * @param agents Number of agents
+     * @param situations Number of weights per agent
+     * @return Storage in the memory-mapped file
+     * @throws IllegalStateException if the file holds a matching matrix which was mutated after its last flush
+     */
+    static BufferStorage mapped(final Path file, final int agents, final int situations)
+    {
+        try (final FileChannel ch = FileChannel.open(file, CREATE, READ, WRITE))
+        {
+            final boolean resume = ch.size() == bytes(agents, situations);
+            final MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes(agents, situations));
+            final BufferStorage s = new BufferStorage(map, agents, situations);
+            if (!resume || !s.headerMatches(agents, situations))
+                s.writeHeader(agents, situations);
+            else if (s.persistedGeneration() < 0)
+            {
+                s.close();
+                throw new IllegalStateException("Matrix of " + file + " was not flushed after its last mutation");
+            }
+            return s;
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override public int getWeight(final int index)
+    {
+        return weights.get(index);
+    }
+
+    @Override public void setWeight(final int index, final int weight)
+    {
+        if (!dirty) markDirty();
+        weights.put(index, weight);
+    }
+
+    @Override public double getFitness(final int agent)
+    {
+        return fitness.get(agent);
+    }
+
+    @Override public void setFitness(final int agent, final double cost)
+    {
+        if (!dirty) markDirty();
+        fitness.put(agent, cost);
+    }
+
+    /**
+     * Forces every weight & cost to the file, and only then the generation they belong to
+     *
+     * Must not be called while the contents are being mutated.
+     *
+     * @param generation Generation number the contents belong to
+     */
+    @Override public void flush(final int generation)
+    {
+        if (generation < 0) throw new IllegalArgumentException("Generation number must be non-negative");
+        ensureOpen();
+        force(buffer.capacity());
+        buffer.putInt(GENERATION_OFFSET, generation);
+        force(HEADER_BYTES);
+        dirty = false;
+    }
+
+    /**
+     * Releases the memory, unmapping the file if mapped, without flushing
+     *
+     * Closing is idempotent. Afterwards, weights & costs throw IndexOutOfBoundsException,
+     * and every other operation throws IllegalStateException.
+     */
+    @Override public synchronized void close()
+    {
+        if (closed) return;
+        closed = true;
+        /* Accessing released memory would crash the JVM, whereas an empty buffer throws */
+        final ByteBuffer released = buffer;
+        buffer = ByteBuffer.allocate(0);
+        weights = IntBuffer.allocate(0);
+        fitness = DoubleBuffer.allocate(0);
+        final Object unsafe;
+        try
+        {
+            final Field f = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafe = f.get(null);
+        }
+        catch (final ReflectiveOperationException e)
+        {
+            return; // Unavailable, the memory is released once the buffer is garbage collected
+        }
+        try
+        {
+            unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe, released);
+        }
+        catch (final InvocationTargetException e)
+        {
+            throw new IllegalStateException("Memory of the matrix could not be released", e.getCause());
+        }
+        catch (final ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Memory of the matrix could not be released", e);
+        }
+    }
+
+    @Override public int persistedGeneration()
+    {
+        ensureOpen();
+        return buffer.getInt(GENERATION_OFFSET);
+    }
+
+    /* Clears the generation on disk before the contents it describes are mutated */
+    private synchronized void markDirty()
+    {
+        if (dirty) return;
+        ensureOpen();
+        buffer.putInt(GENERATION_OFFSET, -1);
+        force(HEADER_BYTES);
+        dirty = true;
+    }
+
+    private void ensureOpen()
+    {
+        if (closed) throw new IllegalStateException("Matrix storage has been closed");
+    }
+
+    private void force(final int length)
+    {
+        if (buffer instanceof MappedByteBuffer)
+            ((MappedByteBuffer)buffer).force(0, length);
+    }
+
+    private void writeHeader(final int agents, final int situations)
+    {
+        buffer.putInt(0, MAGIC).putInt(Integer.BYTES, VERSION)
+                .putInt(2 * Integer.BYTES, agents).putInt(3 * Integer.BYTES, situations)
+                .putInt(GENERATION_OFFSET, -1);
+    }
+
+    private boolean headerMatches(final int agents, final int situations)
+    {
+        return buffer.getInt(0) == MAGIC && buffer.getInt(Integer.BYTES) == VERSION
+                && buffer.getInt(2 * Integer.BYTES) == agents && buffer.getInt(3 * Integer.BYTES) == situations;
+    }
+
+    private ByteBuffer slice(final int offset, final int length)
+    {
+        return buffer.duplicate().position(offset).limit(offset + length).slice().order(buffer.order());
+    }
+
+    private static int align(final int bytes)
+    {
+        return (bytes + Double.BYTES - 1) & -Double.BYTES;
+    }
+
+    /* Size of the storage in bytes, a single buffer is limited to 2 GiB */
+    private static int bytes(final int agents, final int situations)
+    {
+        final long bytes = HEADER_BYTES + (((long)agents * situations * Integer.BYTES + Double.BYTES - 1) & -Double.BYTES)
+                + (long)agents * Double.BYTES;
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Population is too large to be stored in one buffer");
+        return (int)bytes;
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.population;
+
+import util.FastRandom;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32C;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Defines a snapshot of a run: the population, its generation number and every generator's state
+ *
+ * A run which restores a checkpoint continues bit-for-bit as if it had never stopped,
+ * provided each generator it draws from is restored. Agents evaluated through
+ * `AgentMatrix.evaluate` derive their generators from the root seed and generation,
+ * so only the generators which outlive a generation, ex. the breeding generator, need saving.
+ *
+ * A run loop would typically write a checkpoint every few generations, after breeding:
+ * <pre>
+ *     if (gen % interval == 0) Checkpoint.write(file, matrix, gen + 1, rootSeed, breeder);
+ * </pre>
+ *
+ * File layout, little-endian:
+ * [magic][version][agents][situations][generation][root seed][generator count]
+ * ([name length][class name][state length][state...])* [weights...] [costs...] [CRC32C]
+ *
+ * Files are written through a channel in large blocks, to a temporary file which then
+ * replaces the checkpoint atomically, so a crash mid-write never destroys the previous checkpoint.
+ */
+public final class Checkpoint
+{
+    private final AgentMatrix matrix;
+    private final int generation;
+    private final long rootSeed;
+    private final String[] generatorNames;
+    private final long[][] generatorStates;
+
+    private static final int MAGIC = 0x4B434A42; // "BJCK"
+    private static final int VERSION = 1;
+    private static final int BLOCK_BYTES = 1 << 20;
+
+    private Checkpoint(final AgentMatrix matrix, final int generation, final long rootSeed,
+                       final String[] generatorNames, final long[][] generatorStates)
+    {
+        this.matrix = matrix;
+        this.generation = generation;
+        this.rootSeed = rootSeed;
+        this.generatorNames = generatorNames;
+        this.generatorStates = generatorStates;
+    }
+
+    /**
+     * Writes a checkpoint of a run
+     *
+     * @param file File to write the checkpoint to, replaced if it exists
+     * @param matrix Population of the run
+     * @param generation Generation number the run should resume from
+     * @param rootSeed Root seed of the run's evaluation seeds
+     * @param generators Generators of the run, to be restored in the same order
+     */
+    public static void write(final Path file, final AgentMatrix matrix, final int generation,
+                             final long rootSeed, final FastRandom... generators)
+    {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (final FileChannel ch = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING))
+        {
+            final Writer w = new Writer(ch);
+            w.ensure(7 * Long.BYTES);
+            w.buffer.putInt(MAGIC).putInt(VERSION).putInt(matrix.size()).putInt(SITUATIONS)
+                    .putInt(generation).putLong(rootSeed).putInt(generators.length);
+            for (final FastRandom g : generators)
+            {
+                final byte[] name = g.getClass().getName().getBytes(StandardCharsets.UTF_8);
+                final long[] state = g.getState();
+                w.ensure(2 * Integer.BYTES + name.length + state.length * Long.BYTES);
+                w.buffer.putInt(name.length).put(name).putInt(state.length);
+                for (final long s : state)
+                    w.buffer.putLong(s);
+            }
+
+            final int weights = matrix.size() * SITUATIONS;
+            for (int i = 0; i < weights; i++)
+            {
+                w.ensure(Integer.BYTES);
+                w.buffer.putInt(matrix.weight(i));
+            }
+            for (int i = 0; i < matrix.size(); i++)
+            {
+                w.ensure(Double.BYTES);
+                w.buffer.putDouble(matrix.fitness(i));
+            }
+            w.finish();
+            ch.force(false);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        try
+        {
+            Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a checkpoint into a matrix on the heap
+     *
+     * @param file File containing the checkpoint
+     * @return Checkpoint
+     */
+    public static Checkpoint read(final Path file)
+    {
+        return read(file, AgentMatrix::new);
+    }
+
+    /**
+     * Reads a checkpoint
+     *
+     * @param file File containing the checkpoint
+     * @param matrices Constructs a matrix of the specified number of agents, ex. `AgentMatrix::offHeap`
+     * @return Checkpoint
+     */
+    public static Checkpoint read(final Path file, final IntFunction<AgentMatrix> matrices)
+    {
+        try (final FileChannel ch = FileChannel.open(file, READ))
+        {
+            final Reader r = new Reader(ch);
+            r.require(7 * Long.BYTES);
+            if (r.buffer.getInt() != MAGIC || r.buffer.getInt() != VERSION)
+                throw new IllegalStateException("File is not a checkpoint of a supported version: " + file);
+            final int agents = r.buffer.getInt();
+            if (r.buffer.getInt() != SITUATIONS)
+                throw new IllegalStateException("Checkpoint is of agents with a different number of situations");
+            final int generation = r.buffer.getInt();
+            final long rootSeed = r.buffer.getLong();
+
+            final int count = r.buffer.getInt();
+            final String[] names = new String[count];
+            final long[][] states = new long[count][];
+            for (int g = 0; g < count; g++)
+            {
+                r.require(Integer.BYTES);
+                final byte[] name = new byte[r.buffer.getInt()];
+                r.require(name.length + Integer.BYTES);
+                r.buffer.get(name);
+                names[g] = new String(name, StandardCharsets.UTF_8);
+                states[g] = new long[r.buffer.getInt()];
+                r.require(states[g].length * Long.BYTES);
+                for (int i = 0; i < states[g].length; i++)
+                    states[g][i] = r.buffer.getLong();
+            }
+
+            final AgentMatrix matrix = requireNonNull(matrices.apply(agents));
+            if (matrix.size() != agents)
+                throw new IllegalArgumentException("Matrix does not have room for " + agents + " agents");
+            final int weights = agents * SITUATIONS;
+            for (int i = 0; i < weights; i++)
+            {
+                r.require(Integer.BYTES);
+                matrix.setWeight(i, r.buffer.getInt());
+            }
+            for (int i = 0; i < agents; i++)
+            {
+                r.require(Double.BYTES);
+                matrix.setFitness(i, r.buffer.getDouble());
+            }
+            r.verify();
+            return new Checkpoint(matrix, generation, rootSeed, names, states);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Restores the state of the run's generators
+     *
+     * @param generators Generators of the run, in the order they were written
+     */
+    public void restore(final FastRandom... generators)
+    {
+        if (generators.length != generatorStates.length)
+            throw new IllegalArgumentException("Checkpoint holds " + generatorStates.length + " generators");
+        for (int g = 0; g < generators.length; g++)
+        {
+            if (!generators[g].getClass().getName().equals(generatorNames[g]))
+                throw new IllegalArgumentException("Generator " + g + " is not a " + generatorNames[g]);
+            generators[g].setState(generatorStates[g]);
+        }
+    }
+
+    /**
+     * @return Population of the run
+     */
+    public AgentMatrix getMatrix()
+    {
+        return matrix;
+    }
+
+    /**
+     * @return Generation number the run resumes from
+     */
+    public int getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * @return Root seed of the run's evaluation seeds
+     */
+    public long getRootSeed()
+    {
+        return rootSeed;
+    }
+
+    /* Buffers writes to a channel in large blocks, checksumming everything written */
+    private static final class Writer
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+
+        private Writer(final FileChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        /* Drains the buffer if fewer than the specified number of bytes remain */
+        private void ensure(final int bytes) throws IOException
+        {
+            if (bytes > BLOCK_BYTES)
+                throw new IllegalArgumentException("Record is larger than a block");
+            if (buffer.remaining() < bytes)
+                drain();
+        }
+
+        private void drain() throws IOException
+        {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        private void finish() throws IOException
+        {
+            drain();
+            buffer.putLong(crc.getValue()).flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /* Buffers reads from a channel in large blocks, checksumming everything read */
+    private static final class Reader
+    {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private int checked; // Position in the buffer up to which bytes have been checksummed
+
+        private Reader(final FileChannel channel)
+        {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        /* Refills the buffer if fewer than the specified number of bytes remain */
+        private void require(final int bytes) throws IOException
+        {
+            if (bytes > BLOCK_BYTES)
+                throw new IllegalStateException("Checkpoint is corrupt");
+            if (buffer.remaining() >= bytes) return;
+            checksum();
+            buffer.compact();
+            while (buffer.position() < bytes)
+                if (channel.read(buffer) < 0)
+                    throw new IllegalStateException("Checkpoint is truncated");
+            buffer.flip();
+            checked = 0;
+        }
+
+        private void checksum()
+        {
+            crc.update(buffer.duplicate().position(checked).limit(buffer.position()));
+            checked = buffer.position();
+        }
+
+        private void verify() throws IOException
+        {
+            checksum();
+            final long expected = crc.getValue();
+            require(Long.BYTES);
+            if (buffer.getLong() != expected)
+                throw new IllegalStateException("Checkpoint is corrupt");
+        }
+    }
+}
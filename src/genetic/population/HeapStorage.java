@@ -0,0 +1,54 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.population;
+
+/**
+ * Defines storage of an AgentMatrix on the Java heap
+ */
+class HeapStorage implements MatrixStorage
+{
+    private final int[] weights;
+    private final double[] fitness;
+
+    HeapStorage(final int agents, final int situations)
+    {
+        weights = new int[agents * situations];
+        fitness = new double[agents];
+    }
+
+    @Override public int getWeight(final int index)
+    {
+        return weights[index];
+    }
+
+    @Override public void setWeight(final int index, final int weight)
+    {
+        weights[index] = weight;
+    }
+
+    @Override public double getFitness(final int agent)
+    {
+        return fitness[agent];
+    }
+
+    @Override public void setFitness(final int agent, final double cost)
+    {
+        fitness[agent] = cost;
+    }
+}
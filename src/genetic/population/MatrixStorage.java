@@ -0,0 +1,70 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.population;
+
+/**
+ * Defines the backing memory of an AgentMatrix: a weight matrix and a cost vector
+ */
+interface MatrixStorage
+{
+    /**
+     * @param index Index of the weight, [agent][situation] in row-major order
+     * @return Weight at the index
+     */
+    int getWeight(final int index);
+
+    /**
+     * @param index Index of the weight, [agent][situation] in row-major order
+     * @param weight Weight to be stored at the index
+     */
+    void setWeight(final int index, final int weight);
+
+    /**
+     * @param agent Index of the agent
+     * @return Cost of the agent
+     */
+    double getFitness(final int agent);
+
+    /**
+     * @param agent Index of the agent
+     * @param cost Cost of the agent
+     */
+    void setFitness(final int agent, final double cost);
+
+    /**
+     * Persists the contents of the storage, if backed by a file
+     *
+     * @param generation Generation number the contents belong to
+     */
+    default void flush(final int generation) { }
+
+    /**
+     * @return Generation number of the persisted contents, or -1 if none were persisted
+     *         or the contents have been mutated since
+     */
+    default int persistedGeneration()
+    {
+        return -1;
+    }
+
+    /**
+     * Releases the memory of the storage, which must not be used thereafter
+     */
+    default void close() { }
+}
@@ -0,0 +1,217 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.population;
+
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+
+/**
+ * Defines partial selection of the agents with the lowest costs, without sorting the population
+ *
+ * Agents are ordered by cost, ties broken by index, so the k lowest-cost agents are
+ * a unique set and both the sequential and parallel paths choose the same agents.
+ * NaN costs (agents yet to be evaluated) order after every other cost.
+ *
+ * The sequential path is an introselect over an index array: O(n) expected, falling back
+ * to heapsort of the remaining range should partitioning degenerate. The parallel path
+ * first counts costs into buckets spanning the lowest to highest finite cost in parallel,
+ * keeps every agent of the buckets entirely below the k-th, and introselects only within
+ * the bucket containing it.
+ */
+final class Selection
+{
+    /* Populations of at least this size are selected in parallel */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int BUCKETS = 1 << 16;
+
+    private Selection() { }
+
+    /**
+     * @param costs Cost of each agent
+     * @param k Number of agents to be selected
+     * @return Indices of the k agents with the lowest costs, in no particular order
+     */
+    static int[] lowest(final double[] costs, final int k)
+    {
+        return lowest(costs, keys(costs), k);
+    }
+
+    /**
+     * @param costs Cost of each agent
+     * @param k Number of agents to be reported
+     * @return Indices of the k agents with the lowest costs, lowest first
+     */
+    static int[] best(final double[] costs, final int k)
+    {
+        final long[] keys = keys(costs);
+        final int[] best = lowest(costs, keys, k);
+        heapsort(best, keys, 0, best.length);
+        return best;
+    }
+
+    private static int[] lowest(final double[] costs, final long[] keys, final int k)
+    {
+        if (k == costs.length) return IntStream.range(0, k).toArray();
+        if (costs.length < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2)
+        {
+            final int[] idx = IntStream.range(0, keys.length).toArray();
+            select(idx, keys, 0, idx.length, k);
+            return Arrays.copyOf(idx, k);
+        }
+
+        final DoubleSummaryStatistics range = Arrays.stream(costs).parallel().filter(Double::isFinite).summaryStatistics();
+        final double min = range.getMin(), spread = (BUCKETS - 2) / (range.getMax() - range.getMin());
+        final double scale = spread > 0.0 && spread < Double.POSITIVE_INFINITY ? spread : 0.0;
+
+        /* Each chunk counts its own buckets, so survivors can be written to precomputed offsets */
+        final int chunks = 4 * ForkJoinPool.getCommonPoolParallelism(), length = (costs.length + chunks - 1) / chunks;
+        final int[][] counts = new int[chunks][];
+        IntStream.range(0, chunks).parallel().forEach(c ->
+        {
+            final int[] count = counts[c] = new int[BUCKETS];
+            for (int i = c * length, end = Math.min(costs.length, i + length); i < end; i++)
+                count[bucket(costs[i], min, scale)]++;
+        });
+        int pivot = 0, below = 0;
+        for (int total = 0; ; below += total, pivot++)
+        {
+            total = 0;
+            for (final int[] count : counts)
+                total += count[pivot];
+            if (below + total >= k) break;
+        }
+
+        /* Every agent of a lower bucket survives, only the pivot's bucket must be selected within */
+        final int[] lowerAt = new int[chunks], tiesAt = new int[chunks];
+        int ties = 0;
+        for (int c = 0, lower = 0; c < chunks; c++)
+        {
+            lowerAt[c] = lower;
+            tiesAt[c] = ties;
+            for (int b = 0; b < pivot; b++)
+                lower += counts[c][b];
+            ties += counts[c][pivot];
+        }
+        final int p = pivot;
+        final int[] selected = new int[k], tied = new int[ties];
+        IntStream.range(0, chunks).parallel().forEach(c ->
+        {
+            int l = lowerAt[c], t = tiesAt[c];
+            for (int i = c * length, end = Math.min(costs.length, i + length); i < end; i++)
+            {
+                final int b = bucket(costs[i], min, scale);
+                if (b < p) selected[l++] = i;
+                else if (b == p) tied[t++] = i;
+            }
+        });
+        select(tied, keys, 0, tied.length, k - below);
+        System.arraycopy(tied, 0, selected, below, k - below);
+        return selected;
+    }
+
+    /* Monotonic in cost: finite costs are spread linearly, NaN occupies the last bucket */
+    private static int bucket(final double cost, final double min, final double scale)
+    {
+        if (Double.isNaN(cost)) return BUCKETS - 1;
+        return (int)Math.max(0.0, Math.min(BUCKETS - 2, (cost - min) * scale));
+    }
+
+    /* Partitions idx[from,to) such that its `k - from` lowest agents occupy idx[from,k) */
+    private static void select(final int[] idx, final long[] keys, int from, int to, final int k)
+    {
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (to - from > 1)
+        {
+            if (budget-- == 0)
+            {
+                heapsort(idx, keys, from, to);
+                return;
+            }
+            /* Median of three, then a Hoare partition around it */
+            final int mid = (from + to) >>> 1;
+            if (less(idx[mid], idx[from], keys)) swap(idx, mid, from);
+            if (less(idx[to - 1], idx[from], keys)) swap(idx, to - 1, from);
+            if (less(idx[to - 1], idx[mid], keys)) swap(idx, to - 1, mid);
+            final int pivot = idx[mid];
+            int i = from, j = to - 1;
+            while (i <= j)
+            {
+                while (less(idx[i], pivot, keys)) i++;
+                while (less(pivot, idx[j], keys)) j--;
+                if (i <= j) swap(idx, i++, j--);
+            }
+            if (k <= j + 1) to = j + 1;
+            else if (k >= i) from = i;
+            else return; // Agents between j and i equal the pivot, which straddles k
+        }
+    }
+
+    private static void heapsort(final int[] idx, final long[] keys, final int from, final int to)
+    {
+        final int n = to - from;
+        for (int i = n / 2 - 1; i >= 0; i--)
+            siftDown(idx, keys, from, i, n);
+        for (int end = n - 1; end > 0; end--)
+        {
+            swap(idx, from, from + end);
+            siftDown(idx, keys, from, 0, end);
+        }
+    }
+
+    private static void siftDown(final int[] idx, final long[] keys, final int base, int node, final int n)
+    {
+        while (2 * node + 1 < n)
+        {
+            int child = 2 * node + 1;
+            if (child + 1 < n && less(idx[base + child], idx[base + child + 1], keys)) child++;
+            if (!less(idx[base + node], idx[base + child], keys)) return;
+            swap(idx, base + node, base + child);
+            node = child;
+        }
+    }
+
+    /* Orders agents by cost, then by index */
+    private static boolean less(final int a, final int b, final long[] keys)
+    {
+        return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+    }
+
+    private static void swap(final int[] idx, final int a, final int b)
+    {
+        final int t = idx[a];
+        idx[a] = idx[b];
+        idx[b] = t;
+    }
+
+    /* Maps costs to longs of the same order, NaN after positive infinity, -0.0 equal to 0.0 */
+    private static long[] keys(final double[] costs)
+    {
+        final long[] keys = new long[costs.length];
+        final IntStream range = IntStream.range(0, costs.length);
+        (costs.length >= PARALLEL_THRESHOLD ? range.parallel() : range).forEach(i ->
+        {
+            final long bits = Double.doubleToLongBits(costs[i] + 0.0);
+            keys[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        });
+        return keys;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package genetic.population;
+
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.SeedSequence;
+import genetic.fitness.SeededFitness;
+import util.FastRandom;
+import util.Xoroshiro128;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static java.util.Objects.requireNonNull;
+import static util.Utilities.validateDomain;
+
+
+/**
+ * Evolves an AgentMatrix in steady-state: without generations, so without a barrier between them
+ *
+ * Every worker repeatedly breeds one child from two parents chosen by tournament, evaluates it,
+ * then replaces the worst agent of another tournament if the child costs less. No worker waits
+ * for another to finish an evaluation, so cores stay busy regardless of how uneven evaluations are.
+ *
+ * The matrix acts as the ranked pool: tournaments rank small random samples of it, rather than
+ * ranking the whole pool. Each row is guarded by a sequence lock. A replacement claims the row by
+ * CAS, writes it, then releases it. Parents are copied optimistically and re-copied should a
+ * replacement have overlapped. Costs read during tournaments are not guarded, as a stale cost
+ * only affects which agent wins the tournament.
+ *
+ * Children are numbered by birth and evaluated with the seed of their birth number, but births
+ * interleave nondeterministically across workers: unlike the generational mode, only runs with
+ * a single worker are reproducible.
+ */
+public class SteadyStateEvolution
+{
+    private final AgentMatrix matrix;
+    private final SeededFitness<ConcreteAgent> fitness;
+    private final int tournament;
+    private final float mutationRate;
+    private final long rootSeed;
+    private final Xoroshiro128 generator;
+
+    /* Sequence number of each row, odd while the row is being replaced */
+    private final AtomicIntegerArray versions;
+    private final AtomicLong births = new AtomicLong(), replacements = new AtomicLong();
+    private final AtomicLong bestCost = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+
+    /**
+     * @param matrix Pool of agents, unevaluated agents are evaluated before evolution begins
+     * @param fitness Cost function of an agent, seeded with the agent's birth seed
+     * @param tournament Number of agents sampled by each tournament
+     * @param mutationRate Percentage [0.0,1.0] of a child's weights which are randomized
+     * @param rootSeed Seed of the entire run
+     */
+    public SteadyStateEvolution(final AgentMatrix matrix, final SeededFitness<ConcreteAgent> fitness,
+                                final int tournament, final float mutationRate, final long rootSeed)
+    {
+        if (tournament < 2 || tournament > matrix.size())
+            throw new IllegalArgumentException("Tournament size must be at least two and within the pool");
+        validateDomain(mutationRate, 0.0f, 1.0f);
+        this.matrix = matrix;
+        this.fitness = requireNonNull(fitness);
+        this.tournament = tournament;
+        this.mutationRate = mutationRate;
+        this.rootSeed = rootSeed;
+        generator = new Xoroshiro128(rootSeed);
+        versions = new AtomicIntegerArray(matrix.size());
+    }
+
+    /**
+     * Evolves the pool until the budget of births is spent, or an agent reaches the target cost
+     *
+     * @param births Maximum number of children to be born during this run
+     * @param targetCost Cost at or below which evolution stops
+     * @param workers Number of workers, ex. the parallelism of the pool
+     * @param pool Pool in which the workers run
+     */
+    public void run(final long births, final double targetCost, final int workers, final ForkJoinPool pool)
+    {
+        if (workers <= 0) throw new IllegalArgumentException("Number of workers must be positive and non-zero");
+        pool.submit(() -> IntStream.range(0, matrix.size()).parallel().forEach(i ->
+        {
+            if (Double.isNaN(matrix.fitness(i)))
+            {
+                final long seed = SeedSequence.seed(rootSeed, -1, i);
+                record(i, fitness.evaluateFitness(matrix.toConcreteAgent(i, FastRandom.mix64(seed)), seed));
+            }
+            else record(i, matrix.fitness(i));
+        })).join();
+
+        final long limit = this.births.get() + births;
+        final Future<?>[] running = new Future<?>[workers];
+        for (int w = 0; w < workers; w++)
+        {
+            final FastRandom r = generator.split(); // Independent stream for each worker
+            running[w] = pool.submit(() -> work(r, limit, targetCost));
+        }
+        for (final Future<?> f : running)
+        {
+            try
+            {
+                f.get();
+            }
+            catch (final Exception e)
+            {
+                throw new IllegalStateException("Worker failed", e);
+            }
+        }
+    }
+
+    private void work(final FastRandom r, final long limit, final double targetCost)
+    {
+        final int[] a = new int[SITUATIONS], b = new int[SITUATIONS];
+        final int[] child = new int[SITUATIONS];
+        while (getBestCost() > targetCost)
+        {
+            final long birth = births.getAndIncrement();
+            if (birth >= limit)
+            {
+                births.decrementAndGet(); // Budget is spent, the birth never happened
+                return;
+            }
+            copyRow(winner(r), a);
+            copyRow(winner(r), b);
+            long bits = 0;
+            for (int s = 0; s < SITUATIONS; s++) // Uniform crossover & mutation, see AgentMatrix
+            {
+                if ((s & 63) == 0) bits = r.nextLong();
+                child[s] = (bits & 1L << (s & 63)) != 0 ? a[s] : b[s];
+            }
+            for (int s = 0; s < SITUATIONS; s++)
+                if (r.nextFloat() < mutationRate)
+                    child[s] = r.nextInt(Integer.MAX_VALUE);
+
+            final long seed = SeedSequence.seed(rootSeed, (int)(birth >>> 31), (int)(birth & Integer.MAX_VALUE));
+            final ConcreteAgent ca = new ConcreteAgent(FastRandom.mix64(seed));
+            System.arraycopy(child, 0, ca.getWeights(), 0, SITUATIONS);
+            replace(r, child, fitness.evaluateFitness(ca, seed));
+        }
+    }
+
+    /* Agent with the lowest cost of a tournament */
+    private int winner(final FastRandom r)
+    {
+        int best = r.nextInt(matrix.size());
+        for (int t = 1; t < tournament; t++)
+        {
+            final int i = r.nextInt(matrix.size());
+            if (matrix.fitness(i) < matrix.fitness(best)) best = i;
+        }
+        return best;
+    }
+
+    /* Replaces the agent with the highest cost of a tournament, if the child costs less */
+    private void replace(final FastRandom r, final int[] child, final double cost)
+    {
+        while (true)
+        {
+            int worst = r.nextInt(matrix.size());
+            for (int t = 1; t < tournament; t++)
+            {
+                final int i = r.nextInt(matrix.size());
+                if (matrix.fitness(i) > matrix.fitness(worst)) worst = i;
+            }
+            final int v = versions.get(worst);
+            if ((v & 1) != 0 || !versions.compareAndSet(worst, v, v + 1))
+                continue; // Already being replaced, hold another tournament
+            if (cost < matrix.fitness(worst))
+            {
+                for (int s = 0, o = matrix.offset(worst); s < SITUATIONS; s++)
+                    matrix.setWeight(o + s, child[s]);
+                record(worst, cost);
+                replacements.incrementAndGet();
+            }
+            versions.set(worst, v + 2);
+            return;
+        }
+    }
+
+    /* Copies a row, re-copying it should a replacement overlap the copy */
+    private void copyRow(final int agent, final int[] row)
+    {
+        while (true)
+        {
+            final int v = versions.get(agent);
+            if ((v & 1) == 0)
+            {
+                for (int s = 0, o = matrix.offset(agent); s < SITUATIONS; s++)
+                    row[s] = matrix.weight(o + s);
+                VarHandle.acquireFence();
+                if (versions.get(agent) == v) return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void record(final int agent, final double cost)
+    {
+        matrix.setFitness(agent, cost);
+        long current;
+        while (cost < Double.longBitsToDouble(current = bestCost.get()))
+            if (bestCost.compareAndSet(current, Double.doubleToLongBits(cost))) return;
+    }
+
+    /**
+     * @return Number of children born
+     */
+    public long getBirths()
+    {
+        return births.get();
+    }
+
+    /**
+     * @return Number of children which replaced an agent of the pool
+     */
+    public long getReplacements()
+    {
+        return replacements.get();
+    }
+
+    /**
+     * @return Lowest cost of any agent to have entered the pool
+     */
+    public double getBestCost()
+    {
+        return Double.longBitsToDouble(bestCost.get());
+    }
+}
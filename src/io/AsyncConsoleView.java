@@ -0,0 +1,341 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import blackjack.BlackjackWatchable;
+import blackjack.card.Card;
+import blackjack.player.Dealer;
+import blackjack.player.Player;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ * Defines a console view which formats events on the game thread, and prints them on another
+ *
+ * Produces exactly the output of BlackjackConsoleView, in the same order. Events are appended
+ * to a reusable buffer without parsing any format string. Full buffers are handed to a writer
+ * thread through a bounded lock-free queue, which prints each as a single large chunk and
+ * returns it for reuse. Buffers are also handed off at the end of a round once the previous
+ * hand-off is older than the flush interval, so a slow game still appears promptly.
+ *
+ * If the writer falls behind and every buffer is in use, the backpressure policy either blocks
+ * the game thread until a buffer is free, or drops the pending buffer's events and counts them.
+ * Dropped events are always whole, and the events which are printed retain their order.
+ *
+ * Intended for watching agents play, output may interleave with prompts of a UserPlayer.
+ * Events must be raised from a single thread, and the view must be closed to print the remainder.
+ */
+public class AsyncConsoleView implements BlackjackWatchable, Closeable
+{
+    private final PrintStream out;
+    private final int chunkSize;
+    private final Backpressure backpressure;
+    private final Ring full, free;
+    private final Thread writer;
+
+    /* Buffer currently being appended to, owned by the game thread */
+    private StringBuilder buffer;
+    private int pendingEvents = 0;
+    private long lastHandOff = System.nanoTime();
+    private volatile long dropped = 0;
+    private volatile boolean closed = false;
+
+    private static final String NEW_LINE = System.lineSeparator();
+    private static final String CARD_DEALT = " is dealt: ", HIDDEN_CARD = "??-" + Card.CARD_BACK_SYMBOL;
+    private static final long FLUSH_INTERVAL_NANOS = 50_000_000L, PARK_NANOS = 50_000L;
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 16, DEFAULT_BUFFERS = 8;
+
+    /* String representation of each card, by card code, see Card#toString */
+    private static final String[] cards = new String[Card.DISTINCT_CARDS];
+    static
+    {
+        for (int code = 0; code < Card.DISTINCT_CARDS; code++)
+            cards[code] = Card.fromCode(code).toString();
+    }
+
+    /**
+     * Policy for when the writer has fallen behind, and no buffer is free
+     */
+    public enum Backpressure
+    {
+        BLOCK,  // Game thread waits for the writer to free a buffer
+        DROP    // Game thread discards the pending buffer's events, counting them
+    }
+
+    /**
+     * Prints to System.out, blocking the game if the console falls behind
+     */
+    public AsyncConsoleView()
+    {
+        this(System.out, DEFAULT_CHUNK_SIZE, DEFAULT_BUFFERS, Backpressure.BLOCK);
+    }
+
+    /**
+     * @param out Stream to print events to, only written to by the writer thread
+     * @param chunkSize Number of characters buffered before handing a buffer to the writer
+     * @param buffers Number of buffers cycled between the game and writer threads, at least 2
+     * @param backpressure Policy for when every buffer is in use
+     */
+    public AsyncConsoleView(final PrintStream out, final int chunkSize, final int buffers,
+                            final Backpressure backpressure)
+    {
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive and non-zero");
+        if (buffers < 2) throw new IllegalArgumentException("At least two buffers are required");
+        this.out = requireNonNull(out);
+        this.chunkSize = chunkSize;
+        this.backpressure = requireNonNull(backpressure);
+        full = new Ring(buffers);
+        free = new Ring(buffers);
+        for (int i = 1; i < buffers; i++)
+            free.offer(new StringBuilder(chunkSize + chunkSize / 4));
+        buffer = new StringBuilder(chunkSize + chunkSize / 4);
+
+        writer = new Thread(this::write, "blackjack-console");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Indicates a round of Blackjack has begun
+     */
+    @Override public void roundStart()
+    {
+        buffer.append("A round of Blackjack has begun.").append(NEW_LINE);
+        appended();
+    }
+
+    /**
+     * @param p Player which was dealt a card
+     * @param c Card which was dealt
+     */
+    @Override public void cardDealt(final Player p, final Card c)
+    {
+        buffer.append(p).append(CARD_DEALT).append(cards[c.getCode()]).append(' ');
+        appendCards(p.getField(), p.getField().size());
+        buffer.append(NEW_LINE);
+        appended();
+    }
+
+    /**
+     * @param d Dealer who hid their card
+     */
+    @Override public void dealerHideCard(final Dealer d)
+    {
+        buffer.append(d).append(CARD_DEALT).append(HIDDEN_CARD).append(NEW_LINE);
+        appended();
+    }
+
+    /**
+     * Omits the dealer's last card if the game is in progress, see BlackjackConsoleView#dealerRevealCard
+     *
+     * @param d Dealer who revealed their card
+     * @param c Card which was revealed
+     * @param afterRound true if reveal is happening while the round is already over
+     */
+    @Override public void dealerRevealCard(final Dealer d, final Card c, final boolean afterRound)
+    {
+        final List<Card> f = d.getField();
+        buffer.append("The Dealer reveals: ").append(cards[c.getCode()]).append(' ');
+        appendCards(f, afterRound ? f.size() : f.size() - 1);
+        buffer.append('\n');
+        appended();
+    }
+
+    /**
+     * @param p Player who has bust
+     */
+    @Override public void playerBust(final Player p)
+    {
+        buffer.append("BUST! ").append(p).append(" is out of the round.\n");
+        appended();
+    }
+
+    /**
+     * @param p Player who has a Blackjack
+     */
+    @Override public void playerBlackjack(final Player p)
+    {
+        buffer.append("BLACKJACK! ").append(p).append(" is out of the round.\n");
+        appended();
+    }
+
+    /**
+     * Indicates the round is over, handing off the buffer if the flush interval has passed
+     */
+    @Override public void reset(final Map<Player, Integer> results)
+    {
+        for (final Map.Entry<Player, Integer> e : results.entrySet())
+        {
+            buffer.append(e.getKey());
+            switch (e.getValue())
+            {
+                case -1: buffer.append(" has lost the round."); break;
+                case 1: buffer.append(" has won the round."); break;
+                default: buffer.append(" has pushed with the dealer.");
+            }
+            buffer.append(NEW_LINE);
+        }
+        buffer.append("\n\n");
+        appended();
+        if (buffer.length() > 0 && System.nanoTime() - lastHandOff >= FLUSH_INTERVAL_NANOS)
+            handOff(backpressure);
+    }
+
+    /**
+     * Hands off any buffered events to the writer, regardless of the chunk size
+     */
+    public void flush()
+    {
+        if (buffer.length() > 0) handOff(backpressure);
+    }
+
+    /**
+     * @return Number of events dropped, as the writer had fallen behind
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    /**
+     * Prints every remaining event, waiting for the writer thread to finish
+     */
+    @Override public void close()
+    {
+        if (closed) return;
+        if (buffer.length() > 0) handOff(Backpressure.BLOCK);
+        closed = true;
+        LockSupport.unpark(writer);
+        try
+        {
+            writer.join();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Appends the first cards of a field, formatted as List#toString */
+    private void appendCards(final List<Card> field, final int count)
+    {
+        buffer.append('[');
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0) buffer.append(", ");
+            buffer.append(cards[field.get(i).getCode()]);
+        }
+        buffer.append(']');
+    }
+
+    /* Accounts for an appended event, handing off the buffer once it has filled */
+    private void appended()
+    {
+        pendingEvents++;
+        if (buffer.length() >= chunkSize) handOff(backpressure);
+    }
+
+    /* Hands the buffer to the writer, and claims a free one in its place */
+    private void handOff(final Backpressure policy)
+    {
+        StringBuilder next = free.poll();
+        if (next == null && policy == Backpressure.DROP)
+        {
+            dropped += pendingEvents;
+            pendingEvents = 0;
+            buffer.setLength(0);
+            return;
+        }
+        full.offer(buffer);
+        LockSupport.unpark(writer);
+        while (next == null)
+        {
+            LockSupport.parkNanos(PARK_NANOS);
+            next = free.poll();
+        }
+        buffer = next;
+        pendingEvents = 0;
+        lastHandOff = System.nanoTime();
+    }
+
+    /* Writer thread: prints full buffers in order, returning each for reuse */
+    private void write()
+    {
+        while (true)
+        {
+            final StringBuilder b = full.poll();
+            if (b != null)
+            {
+                out.append(b);
+                b.setLength(0);
+                free.offer(b);
+                continue;
+            }
+            out.flush();
+            if (closed && full.isEmpty()) return;
+            LockSupport.parkNanos(this, PARK_NANOS * 20);
+        }
+    }
+
+    /* Bounded single-producer, single-consumer queue of buffers */
+    private static final class Ring
+    {
+        private final StringBuilder[] slots;
+        /* Index of the next slot to poll, and of the next slot to offer to */
+        private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+        Ring(final int capacity)
+        {
+            slots = new StringBuilder[capacity];
+        }
+
+        /* Never fails, as every buffer fits within the ring */
+        void offer(final StringBuilder b)
+        {
+            final long t = tail.get();
+            if (t - head.get() == slots.length) throw new IllegalStateException("Ring is full");
+            slots[(int)(t % slots.length)] = b;
+            tail.lazySet(t + 1); // Publishes the slot to the consumer
+        }
+
+        StringBuilder poll()
+        {
+            final long h = head.get();
+            if (h == tail.get()) return null;
+            final int i = (int)(h % slots.length);
+            final StringBuilder b = slots[i];
+            slots[i] = null;
+            head.lazySet(h + 1); // Releases the slot to the producer
+            return b;
+        }
+
+        boolean isEmpty()
+        {
+            return head.get() == tail.get();
+        }
+    }
+}
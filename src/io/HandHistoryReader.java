@@ -0,0 +1,194 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import blackjack.BlackjackWatchable;
+import blackjack.card.Card;
+import blackjack.player.Dealer;
+import blackjack.player.Player;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.HandHistoryWriter.*;
+import static java.nio.file.StandardOpenOption.READ;
+
+
+/**
+ * Defines a replay of a hand history log, see HandHistoryWriter
+ *
+ * Events are streamed back through a BlackjackWatchable in the order they were recorded.
+ * Stand-in players are dealt the recorded cards, so their hands and fields match the
+ * original players' when each event is raised. Stand-ins are named after their seat,
+ * and cannot make decisions of their own.
+ */
+public class HandHistoryReader
+{
+    private final FileChannel channel;
+    private final long records;
+    private MappedByteBuffer region;
+    /* Index of the first record of the current region */
+    private long regionFirst = 0;
+
+    private final Player[] seats = new Player[DEALER_SEAT];
+    private final Dealer dealer = new Dealer();
+    private final Map<Player, Integer> results = new LinkedHashMap<>();
+    private final Map<Player, Integer> results_ro = Collections.unmodifiableMap(results);
+
+    private HandHistoryReader(final FileChannel channel) throws IOException
+    {
+        this.channel = channel;
+        final long size = channel.size();
+        if (size < HEADER_BYTES) throw new IllegalStateException("File is not a hand history");
+        final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != MAGIC || header.getShort() != VERSION)
+            throw new IllegalStateException("File is not a hand history of a supported version");
+        records = (size - HEADER_BYTES) / 2;
+        dealer.trackField();
+        map(0);
+    }
+
+    /**
+     * Streams every recorded event through the watcher
+     *
+     * @param file File of the log
+     * @param watcher Handler to-be passed Blackjack events
+     * @return Number of rounds replayed
+     */
+    public static long replay(final Path file, final BlackjackWatchable watcher)
+    {
+        try (FileChannel channel = FileChannel.open(file, READ))
+        {
+            return new HandHistoryReader(channel).replay(watcher);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long replay(final BlackjackWatchable watcher) throws IOException
+    {
+        long rounds = 0;
+        /* The dealer's card following a reveal is dealt ahead of the reveal, see BJEventTranslator */
+        boolean dealtAhead = false;
+        for (long i = 0; i < records; i++)
+        {
+            final int record = record(i);
+            final int type = record >>> TYPE_SHIFT, seat = record >>> SEAT_SHIFT & SEAT_MASK;
+            final int payload = record & PAYLOAD_MASK;
+            switch (type)
+            {
+                case ROUND_START: watcher.roundStart(); break;
+                case CARD_DEALT:
+                {
+                    final Player p = player(seat);
+                    final Card c = Card.fromCode(payload);
+                    if (dealtAhead && p == dealer) dealtAhead = false;
+                    else p.accept(c);
+                    watcher.cardDealt(p, c);
+                } break;
+                case HIDE_CARD:
+                    dealer.accept(Card.fromCode(payload));
+                    watcher.dealerHideCard(dealer); break;
+                case REVEAL_CARD:
+                {
+                    final boolean afterRound = (payload & AFTER_ROUND) != 0;
+                    if (!afterRound && i + 1 < records)
+                    {
+                        final int next = record(i + 1);
+                        if (next >>> TYPE_SHIFT == CARD_DEALT && (next >>> SEAT_SHIFT & SEAT_MASK) == DEALER_SEAT)
+                        {
+                            dealer.accept(Card.fromCode(next & PAYLOAD_MASK));
+                            dealtAhead = true;
+                        }
+                    }
+                    watcher.dealerRevealCard(dealer, Card.fromCode(payload & ~AFTER_ROUND), afterRound);
+                } break;
+                case BUST: watcher.playerBust(player(seat)); break;
+                case BLACKJACK: watcher.playerBlackjack(player(seat)); break;
+                case RESULT:
+                    results.put(player(seat), (payload & ~LAST_RESULT) - 1);
+                    if ((payload & LAST_RESULT) != 0)
+                    {
+                        /* Hands are cleared before the round's results are raised, see BJEventTranslator */
+                        dealer.reset();
+                        for (final Player p : results.keySet())
+                            p.reset();
+                        watcher.reset(results_ro);
+                        results.clear();
+                        rounds++;
+                    } break;
+                default: return rounds; // Space which was never written, the writer was not closed
+            }
+        }
+        return rounds;
+    }
+
+    /* Stand-in of the player in the specified seat */
+    private Player player(final int seat)
+    {
+        if (seat == DEALER_SEAT) return dealer;
+        Player p = seats[seat];
+        if (p == null)
+        {
+            p = seats[seat] = new Seat(seat);
+            p.trackField();
+        }
+        return p;
+    }
+
+    /* Record at the specified index, mapping its region if necessary */
+    private int record(final long index) throws IOException
+    {
+        if (index < regionFirst || index >= regionFirst + region.capacity() / 2)
+            map(index);
+        return region.getShort((int)(index - regionFirst) * 2) & 0xFFFF;
+    }
+
+    private void map(final long first) throws IOException
+    {
+        final long start = HEADER_BYTES + 2 * first;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_BYTES, channel.size() - start));
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        regionFirst = first;
+    }
+
+    /* Stand-in of a recorded player */
+    private static final class Seat extends Player
+    {
+        Seat(final int seat)
+        {
+            super(Integer.toString(seat));
+        }
+
+        @Override public boolean hit()
+        {
+            throw new UnsupportedOperationException("Replayed players do not make decisions");
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package io;
+
+import blackjack.BlackjackWatchable;
+import blackjack.card.Card;
+import blackjack.player.Dealer;
+import blackjack.player.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+
+/**
+ * Defines a sink of Blackjack events, appending each as a compact binary record to a file
+ *
+ * Every event is a single 16-bit record: 3 bits of event type, 6 bits of seat and 7 bits
+ * of payload (card code, reveal flag or round result). Records are appended to a memory-mapped
+ * region of the file, so an event costs a store rather than a system call. The file grows a
+ * region at a time, and is truncated to the records written once closed. Closing is idempotent,
+ * and an event appended afterwards throws IllegalStateException.
+ *
+ * Players are identified by the seat they are first seen in, the dealer by a seat of their own.
+ * See HandHistoryReader to replay a log through any BlackjackWatchable.
+ *
+ * This sink is not thread-safe.
+ */
+public class HandHistoryWriter implements BlackjackWatchable, Closeable
+{
+    private final FileChannel channel;
+    /* Mapped region being appended to, or an empty buffer once closed */
+    private ByteBuffer region;
+    private boolean closed = false;
+    /* File offset of the current region */
+    private long regionStart = 0;
+    private long records = 0;
+
+    /* Players seen so far, indexed by seat */
+    private final Player[] seats = new Player[DEALER_SEAT];
+    private int seated = 0;
+
+    static final int MAGIC = 0x48484A42; // "BJHH"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    /* Bytes mapped at a time, a multiple of the record size */
+    static final int REGION_BYTES = 64 << 20;
+
+    /* Event types, where 0 marks space which was never written */
+    static final int ROUND_START = 1, CARD_DEALT = 2, HIDE_CARD = 3, REVEAL_CARD = 4,
+            BUST = 5, BLACKJACK = 6, RESULT = 7;
+    static final int TYPE_SHIFT = 13, SEAT_SHIFT = 7, SEAT_MASK = 0x3F, PAYLOAD_MASK = 0x7F;
+    /* Seat of the dealer, players occupy the seats below */
+    static final int DEALER_SEAT = SEAT_MASK;
+    /* Payload flags: a card revealed after the round, the last result of a round */
+    static final int AFTER_ROUND = 0x40, LAST_RESULT = 0x40;
+
+    /**
+     * @param file File to write the log to, replacing any existing contents
+     */
+    public HandHistoryWriter(final Path file)
+    {
+        try
+        {
+            channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, READ, WRITE);
+            region = map(0);
+            region.putInt(MAGIC).putShort((short)VERSION).putShort((short)0);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Indicates a round of Blackjack has begun
+     */
+    @Override public void roundStart()
+    {
+        append(ROUND_START, 0, 0);
+    }
+
+    /**
+     * @param p Player which was dealt a card
+     * @param c Card which was dealt
+     */
+    @Override public void cardDealt(final Player p, final Card c)
+    {
+        append(CARD_DEALT, seat(p), c.getCode());
+    }
+
+    /**
+     * The hidden card is recorded too, so replayed fields match the original's
+     *
+     * @param d Dealer who hid their card
+     */
+    @Override public void dealerHideCard(final Dealer d)
+    {
+        final List<Card> field = d.getField();
+        append(HIDE_CARD, DEALER_SEAT, field.get(field.size() - 1).getCode());
+    }
+
+    /**
+     * @param d Dealer who revealed their card
+     * @param c Card which was revealed
+     * @param afterRound true if reveal is happening while the round is already over
+     */
+    @Override public void dealerRevealCard(final Dealer d, final Card c, final boolean afterRound)
+    {
+        append(REVEAL_CARD, DEALER_SEAT, c.getCode() | (afterRound ? AFTER_ROUND : 0));
+    }
+
+    /**
+     * @param p Player who has bust
+     */
+    @Override public void playerBust(final Player p)
+    {
+        append(BUST, seat(p), 0);
+    }
+
+    /**
+     * @param p Player who has a Blackjack
+     */
+    @Override public void playerBlackjack(final Player p)
+    {
+        append(BLACKJACK, seat(p), 0);
+    }
+
+    /**
+     * Records each player's result, the last of which concludes the round
+     *
+     * @param results Round results per-player (win/loss/push)
+     */
+    @Override public void reset(final Map<Player, Integer> results)
+    {
+        int remaining = results.size();
+        for (final Map.Entry<Player, Integer> e : results.entrySet())
+            append(RESULT, seat(e.getKey()), (e.getValue() + 1) | (--remaining == 0 ? LAST_RESULT : 0));
+    }
+
+    /**
+     * @return Number of records written
+     */
+    public long getRecords()
+    {
+        return records;
+    }
+
+    /**
+     * Truncates the file to the records written, and closes it
+     */
+    @Override public void close()
+    {
+        if (closed) return;
+        closed = true;
+        region = ByteBuffer.allocate(0); // Never touch the mapping once the file is truncated beneath it
+        try (channel)
+        {
+            channel.truncate(HEADER_BYTES + 2 * records);
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* Seat of the player, seating them if first seen */
+    private int seat(final Player p)
+    {
+        if (p instanceof Dealer) return DEALER_SEAT;
+        for (int s = 0; s < seated; s++)
+            if (seats[s] == p) return s;
+        if (seated == seats.length)
+            throw new IllegalStateException("Log supports at most " + seats.length + " players");
+        seats[seated] = p;
+        return seated++;
+    }
+
+    private void append(final int type, final int seat, final int payload)
+    {
+        if (!region.hasRemaining())
+        {
+            if (closed) throw new IllegalStateException("Hand history has been closed");
+            try
+            {
+                region = map(regionStart + REGION_BYTES);
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        region.putShort((short)(type << TYPE_SHIFT | seat << SEAT_SHIFT | payload));
+        records++;
+    }
+
+    /* Maps the region beginning at the specified offset, growing the file */
+    private ByteBuffer map(final long start) throws IOException
+    {
+        regionStart = start;
+        final ByteBuffer b = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_BYTES);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        return b;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.SeedSequence;
+import genetic.population.AgentMatrix;
+import org.junit.jupiter.api.Test;
+import util.FastRandom;
+import util.Xoroshiro128;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public final class TestAgentMatrix
+{
+    private static final long SEED = 7730114902117L;
+    private static final int AGENTS = 40, SURVIVORS = 14, GENERATIONS = 2;
+    private static final int BJ_SHOE_SIZE = 8, BJ_ROUNDS_PER_AGENT = 500;
+    private static final float BJ_SHOE_PEN = 0.35f, MUTATION_RATE = 0.1f;
+
+    /* Cost function shared by matrix views & concrete agents */
+    private static double play(final Player player, final long seed)
+    {
+        return new HeadsUpBlackjack(player, BJ_SHOE_SIZE, seed, BJ_SHOE_PEN).playRounds(BJ_ROUNDS_PER_AGENT).cost();
+    }
+
+    /* Concrete agent seeded as AgentMatrix#evaluate seeds the agent's view */
+    private static ConcreteAgent concrete(final int[] weights, final int generation, final int index)
+    {
+        final ConcreteAgent ca = new ConcreteAgent(FastRandom.mix64(SeedSequence.seed(SEED, generation, index)));
+        System.arraycopy(weights, 0, ca.getWeights(), 0, SITUATIONS);
+        return ca;
+    }
+
+    private static int[] row(final AgentMatrix m, final int agent)
+    {
+        return m.toConcreteAgent(agent, SEED).getWeights();
+    }
+
+    @Test public void evaluationMatchesConcreteAgents()
+    {
+        final AgentMatrix m = new AgentMatrix(AGENTS);
+        m.randomizeWeights(new Xoroshiro128(SEED));
+        for (int g = 0; g < GENERATIONS; g++)
+        {
+            m.evaluate(TestAgentMatrix::play, g, SEED, ForkJoinPool.commonPool());
+            for (int i = 0; i < AGENTS; i++)
+                assertEquals(play(concrete(row(m, i), g, i), SeedSequence.seed(SEED, g, i)), m.fitness(i), 0.0);
+        }
+    }
+
+    @Test public void breedingMatchesConcreteAgents()
+    {
+        final AgentMatrix m = new AgentMatrix(AGENTS);
+        m.randomizeWeights(new Xoroshiro128(SEED));
+        m.evaluate(TestAgentMatrix::play, 0, SEED, ForkJoinPool.commonPool());
+        final List<int[]> population = new ArrayList<>();
+        final double[] costs = new double[AGENTS];
+        for (int i = 0; i < AGENTS; i++)
+        {
+            population.add(row(m, i));
+            costs[i] = m.fitness(i) + i / (double)AGENTS; // Break ties, so both paths select the same agents
+            m.setFitness(i, costs[i]);
+        }
+
+        /* Survivors move to the front, both survivors and discarded agents keep their relative order */
+        final List<Integer> lowest = IntStream.range(0, AGENTS).boxed()
+                .sorted(Comparator.comparingDouble(i -> costs[i])).limit(SURVIVORS).collect(Collectors.toList());
+        final List<int[]> expected = new ArrayList<>();
+        for (int i = 0; i < AGENTS; i++)
+            if (lowest.contains(i)) expected.add(population.get(i));
+        for (int i = 0; i < AGENTS; i++)
+            if (!lowest.contains(i)) expected.add(population.get(i));
+        m.select(SURVIVORS);
+        for (int i = 0; i < AGENTS; i++)
+            assertArrayEquals(expected.get(i), row(m, i));
+
+        m.repopulate(SURVIVORS, MUTATION_RATE, new Xoroshiro128(SEED));
+        breed(expected, new Xoroshiro128(SEED));
+        m.evaluate(TestAgentMatrix::play, 1, SEED, ForkJoinPool.commonPool());
+        for (int i = 0; i < AGENTS; i++)
+        {
+            final ConcreteAgent ca = concrete(expected.get(i), 1, i);
+            assertArrayEquals(ca.getWeights(), row(m, i));
+            assertEquals(play(ca, SeedSequence.seed(SEED, 1, i)), m.fitness(i), 0.0);
+        }
+    }
+
+    /* Two-pass fischer-yates pairing, uniform crossover & uniform mutation of weight arrays, see AgentMatrix */
+    private static void breed(final List<int[]> population, final Random generator)
+    {
+        final int[] parents = IntStream.range(0, SURVIVORS).toArray();
+        for (int child = SURVIVORS, pair = SURVIVORS; child < AGENTS; child++, pair += 2)
+        {
+            if (pair + 1 >= SURVIVORS)
+            {
+                for (int i = SURVIVORS - 1; i > 0; i--)
+                {
+                    final int j = generator.nextInt(i + 1), t = parents[i];
+                    parents[i] = parents[j];
+                    parents[j] = t;
+                }
+                pair = 0;
+            }
+            final int[] a = population.get(parents[pair]), b = population.get(parents[pair + 1]);
+            final int[] c = new int[SITUATIONS];
+            final long bits = generator.nextLong(); // Every situation fits into one draw
+            for (int s = 0; s < SITUATIONS; s++)
+                c[s] = (bits & 1L << s) != 0 ? a[s] : b[s];
+            for (int s = 0; s < SITUATIONS; s++)
+                if (generator.nextFloat() < MUTATION_RATE)
+                    c[s] = generator.nextInt(Integer.MAX_VALUE);
+            population.set(child, c);
+        }
+    }
+}
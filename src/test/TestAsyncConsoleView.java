@@ -0,0 +1,130 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.BJEventTranslator;
+import blackjack.Blackjack;
+import blackjack.BlackjackWatchable;
+import blackjack.card.Card;
+import blackjack.player.Dealer;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+import io.AsyncConsoleView;
+import io.BlackjackConsoleView;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestAsyncConsoleView
+{
+    private static final int SEATS = 2, ROUNDS = 2000;
+
+    /* Plays the same rounds through both views, returning the synchronous view's output */
+    private static String play(final AsyncConsoleView async)
+    {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final PrintStream stdout = System.out;
+        System.setOut(new PrintStream(expected, true, StandardCharsets.UTF_8));
+        try (async)
+        {
+            final BlackjackWatchable sync = new BlackjackConsoleView();
+            final Blackjack bj = new BJEventTranslator(new BlackjackWatchable()
+            {
+                @Override public void roundStart() { sync.roundStart(); async.roundStart(); }
+                @Override public void cardDealt(final Player p, final Card c) { sync.cardDealt(p, c); async.cardDealt(p, c); }
+                @Override public void dealerHideCard(final Dealer d) { sync.dealerHideCard(d); async.dealerHideCard(d); }
+                @Override public void dealerRevealCard(final Dealer d, final Card c, final boolean afterRound)
+                {
+                    sync.dealerRevealCard(d, c, afterRound);
+                    async.dealerRevealCard(d, c, afterRound);
+                }
+                @Override public void playerBust(final Player p) { sync.playerBust(p); async.playerBust(p); }
+                @Override public void playerBlackjack(final Player p) { sync.playerBlackjack(p); async.playerBlackjack(p); }
+                @Override public void reset(final Map<Player, Integer> results) { sync.reset(results); async.reset(results); }
+            }, 8, 42141451L, 0.35f);
+            for (int s = 0; s < SEATS; s++)
+            {
+                final ConcreteAgent ca = new ConcreteAgent(s);
+                ca.randomizeWeights();
+                bj.dealIn(ca);
+            }
+            for (int r = 0; r < ROUNDS; r++)
+                bj.playRound();
+        }
+        finally
+        {
+            System.setOut(stdout);
+        }
+        return expected.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test public void blockingMatchesConsoleView()
+    {
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final AsyncConsoleView view = new AsyncConsoleView(new PrintStream(actual, false, StandardCharsets.UTF_8),
+                256, 2, AsyncConsoleView.Backpressure.BLOCK);
+        final String expected = play(view);
+        assertEquals(expected, actual.toString(StandardCharsets.UTF_8));
+        assertEquals(0, view.getDropped());
+    }
+
+    /* A stalled console drops whole events, and prints the rest in order */
+    @Test public void droppingPreservesOrder()
+    {
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final OutputStream slow = new OutputStream()
+        {
+            @Override public void write(final int b) { actual.write(b); }
+            @Override public void write(final byte[] b, final int off, final int len)
+            {
+                try
+                {
+                    Thread.sleep(5);
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                actual.write(b, off, len);
+            }
+        };
+        final AsyncConsoleView view = new AsyncConsoleView(new PrintStream(slow, false, StandardCharsets.UTF_8),
+                256, 2, AsyncConsoleView.Backpressure.DROP);
+        final String[] expected = play(view).split(System.lineSeparator() + "|\n", -1);
+        final String[] printed = actual.toString(StandardCharsets.UTF_8).split(System.lineSeparator() + "|\n", -1);
+        assertTrue(view.getDropped() > 0);
+        assertTrue(printed.length < expected.length);
+
+        /* Printed lines are a subsequence of every line */
+        int e = 0;
+        for (final String line : printed)
+        {
+            while (e < expected.length && !expected[e].equals(line)) e++;
+            assertTrue(e++ < expected.length, "Line out of order: " + line);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.BasicStrategy;
+import genetic.fitness.InfiniteDeckFitness;
+import genetic.fitness.ShoeFitness;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestBasicStrategy
+{
+    private static final int AGENTS = 1000;
+
+    @Test public void noAgentBeatsOptimal()
+    {
+        final BasicStrategy optimal = BasicStrategy.solve(0);
+        assertEquals(optimal.getCost(), InfiniteDeckFitness.expectedCost(optimal.getWeights()), 1e-12);
+        assertTrue(optimal.getUpcardCost() < optimal.getCost());
+        for (int i = 0; i < AGENTS; i++)
+        {
+            final ConcreteAgent ca = new ConcreteAgent(i);
+            ca.randomizeWeights();
+            assertTrue(optimal.regret(ca.getWeights()) >= 0);
+        }
+    }
+
+    @Test public void finiteShoeIsRefinedToLocalOptimum()
+    {
+        final BasicStrategy optimal = BasicStrategy.solve(1);
+        final ShoeFitness fitness = new ShoeFitness(1);
+        final int[] weights = optimal.getWeights();
+        assertEquals(optimal.getCost(), fitness.expectedCost(weights), 1e-12);
+
+        /* No single decision flipped improves upon the refined policy */
+        for (int s = 0; s < ConcreteAgent.SITUATIONS; s++)
+        {
+            final int[] flipped = weights.clone();
+            flipped[s] = Integer.MAX_VALUE - flipped[s];
+            assertTrue(fitness.expectedCost(flipped) >= optimal.getCost());
+        }
+        for (int i = 0; i < 2; i++) // Each regret evaluates a fresh shoe, taking a second or so
+        {
+            final ConcreteAgent ca = new ConcreteAgent(i);
+            ca.randomizeWeights();
+            assertTrue(optimal.regret(ca.getWeights()) >= 0);
+        }
+    }
+
+    @Test public void solutionsAreCached() throws IOException
+    {
+        final Path directory = Files.createTempDirectory("basic-strategy");
+        final BasicStrategy solved = BasicStrategy.load(directory, 0);
+        final Path file = directory.resolve("basic-strategy-0.bin");
+        assertTrue(Files.exists(file));
+        assertEquals(solved.getCost(), BasicStrategy.load(directory, 0).getCost());
+
+        /* A corrupt file is solved again and replaced */
+        final byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertEquals(solved.getUpcardCost(), BasicStrategy.load(directory, 0).getUpcardCost());
+        for (int s = 0; s < ConcreteAgent.SITUATIONS; s++)
+            assertEquals(solved.hits(s), BasicStrategy.load(directory, 0).hits(s));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.Blackjack;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.BatchedSimulation;
+import org.junit.jupiter.api.Test;
+import util.Xoroshiro128;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public final class TestBatchedSimulation
+{
+    private static final long SEED = 90210447731L;
+    private static final int LANES = 24, BJ_SHOE_SIZE = 8, BJ_ROUNDS = 20000;
+    private static final float BJ_SHOE_PEN = 0.35f;
+
+    @Test public void lanesMatchBlackjack()
+    {
+        final BatchedSimulation batch = BatchedSimulation.scalar(LANES, BJ_SHOE_SIZE, BJ_SHOE_PEN);
+        final int[][] policies = seat(batch);
+        batch.playRounds(BJ_ROUNDS);
+
+        for (int lane = 0; lane < LANES; lane++)
+        {
+            final ConcreteAgent ca = new ConcreteAgent(decisionSeed(lane));
+            System.arraycopy(policies[lane], 0, ca.getWeights(), 0, ConcreteAgent.SITUATIONS);
+            final Blackjack bj = new Blackjack(BJ_SHOE_SIZE, shoeSeed(lane), BJ_SHOE_PEN);
+            bj.dealIn(ca);
+            final Map<Player, Integer> results = bj.getResults();
+            long wins = 0, pushes = 0, losses = 0;
+            for (int i = 0; i < BJ_ROUNDS; i++)
+            {
+                bj.playRound();
+                final int r = results.get(ca);
+                if (r > 0) wins++;
+                else if (r < 0) losses++;
+                else pushes++;
+            }
+            assertEquals(wins, batch.getWins(lane), "Lane " + lane);
+            assertEquals(pushes, batch.getPushes(lane), "Lane " + lane);
+            assertEquals(losses, batch.getLosses(lane), "Lane " + lane);
+        }
+    }
+
+    private static int[][] seat(final BatchedSimulation batch)
+    {
+        final Xoroshiro128 r = new Xoroshiro128(SEED);
+        final int[][] policies = new int[LANES][ConcreteAgent.SITUATIONS];
+        for (int lane = 0; lane < LANES; lane++)
+        {
+            for (int s = 0; s < ConcreteAgent.SITUATIONS; s++)
+                policies[lane][s] = r.nextInt(Integer.MAX_VALUE);
+            batch.seat(lane, policies[lane], decisionSeed(lane), shoeSeed(lane));
+        }
+        return policies;
+    }
+
+    private static long decisionSeed(final int lane)
+    {
+        return SEED + 2L * lane;
+    }
+
+    private static long shoeSeed(final int lane)
+    {
+        return SEED + 2L * lane + 1;
+    }
+}
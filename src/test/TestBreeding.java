@@ -0,0 +1,72 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import genetic.population.AgentMatrix;
+import org.junit.jupiter.api.Test;
+import util.Xoroshiro128;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestBreeding
+{
+    private static final long SEED = 60184220913L;
+    private static final int AGENTS = 5000, SURVIVORS = 1700;
+    private static final float MUTATION_RATE = 0.1f;
+
+    @Test public void parallelBreedingIgnoresThreadCount()
+    {
+        final AgentMatrix serial = bred(1), parallel = bred(4);
+        for (int i = 0; i < AGENTS * SITUATIONS; i++)
+            assertEquals(serial.weight(i), parallel.weight(i));
+        for (int i = SURVIVORS; i < AGENTS; i++)
+            assertEquals(Double.NaN, parallel.fitness(i));
+
+        final AgentMatrix initial = new AgentMatrix(AGENTS);
+        initial.randomizeWeights(new Xoroshiro128(SEED));
+        int replaced = 0;
+        for (int i = 0; i < AGENTS * SITUATIONS; i++)
+        {
+            if (i < SURVIVORS * SITUATIONS) assertEquals(initial.weight(i), parallel.weight(i));
+            else if (initial.weight(i) != parallel.weight(i)) replaced++;
+        }
+        assertTrue(replaced > (AGENTS - SURVIVORS) * SITUATIONS / 2); // Children were bred over the discarded agents
+    }
+
+    private static AgentMatrix bred(final int threads)
+    {
+        final AgentMatrix m = new AgentMatrix(AGENTS);
+        m.randomizeWeights(new Xoroshiro128(SEED));
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            m.repopulate(SURVIVORS, MUTATION_RATE, SEED, pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        return m;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import genetic.agent.MatrixAgent;
+import genetic.fitness.SeededFitness;
+import genetic.population.AgentMatrix;
+import genetic.population.Checkpoint;
+import org.junit.jupiter.api.Test;
+import util.Xoroshiro128;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public final class TestCheckpoint
+{
+    private static final long SEED = 7741093221L;
+    private static final int AGENTS = 200, SURVIVORS = 50, GENERATIONS = 4;
+    private static final float MUTATION_RATE = 0.05f;
+
+    private static final SeededFitness<MatrixAgent> FITNESS = (agent, seed) ->
+            new HeadsUpBlackjack(agent, 2, seed, 0.35f).playRounds(100).cost();
+
+    @Test public void resumeIsBitExact() throws IOException
+    {
+        final Path file = Files.createTempFile("checkpoint", ".bin");
+        try
+        {
+            final AgentMatrix uninterrupted = new AgentMatrix(AGENTS);
+            final Xoroshiro128 breeder = new Xoroshiro128(SEED);
+            uninterrupted.randomizeWeights(breeder);
+            for (int gen = 0; gen < GENERATIONS; gen++)
+            {
+                if (gen == GENERATIONS / 2)
+                    Checkpoint.write(file, uninterrupted, gen, SEED, breeder);
+                generation(uninterrupted, gen, breeder);
+            }
+
+            final Checkpoint cp = Checkpoint.read(file, AgentMatrix::offHeap);
+            final Xoroshiro128 resumedBreeder = new Xoroshiro128(0);
+            cp.restore(resumedBreeder);
+            final AgentMatrix resumed = cp.getMatrix();
+            for (int gen = cp.getGeneration(); gen < GENERATIONS; gen++)
+                generation(resumed, gen, resumedBreeder);
+
+            for (int i = 0; i < AGENTS * SITUATIONS; i++)
+                assertEquals(uninterrupted.weight(i), resumed.weight(i));
+            for (int i = 0; i < AGENTS; i++)
+                assertEquals(Double.doubleToRawLongBits(uninterrupted.fitness(i)),
+                        Double.doubleToRawLongBits(resumed.fitness(i)));
+            assertEquals(breeder.nextLong(), resumedBreeder.nextLong());
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test public void corruptionIsDetected() throws IOException
+    {
+        final Path file = Files.createTempFile("checkpoint", ".bin");
+        try
+        {
+            final AgentMatrix m = new AgentMatrix(AGENTS);
+            m.randomizeWeights(new Xoroshiro128(SEED));
+            Checkpoint.write(file, m, 0, SEED);
+            try (final FileChannel ch = FileChannel.open(file, WRITE))
+            {
+                ch.write(ByteBuffer.wrap(new byte[] { 0x7F }), ch.size() / 2);
+            }
+            assertThrows(IllegalStateException.class, () -> Checkpoint.read(file));
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test public void mappedMatrixResumesAfterFlush() throws IOException
+    {
+        final Path file = Files.createTempFile("matrix", ".bin");
+        try
+        {
+            final Xoroshiro128 breeder = new Xoroshiro128(SEED);
+            final AgentMatrix flushed = new AgentMatrix(AGENTS);
+            try (final AgentMatrix m = AgentMatrix.mapped(file, AGENTS))
+            {
+                assertEquals(-1, m.persistedGeneration());
+                m.randomizeWeights(breeder);
+                generation(m, 0, breeder);
+                m.evaluate(FITNESS, 1, SEED, ForkJoinPool.commonPool());
+                m.flush(1);
+                copy(m, flushed);
+            }
+            try (final AgentMatrix m = AgentMatrix.mapped(file, AGENTS))
+            {
+                assertEquals(1, m.persistedGeneration());
+                for (int i = 0; i < AGENTS * SITUATIONS; i++)
+                    assertEquals(flushed.weight(i), m.weight(i));
+                for (int i = 0; i < AGENTS; i++)
+                    assertEquals(Double.doubleToRawLongBits(flushed.fitness(i)), Double.doubleToRawLongBits(m.fitness(i)));
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test public void unflushedMappedMatrixIsRejected() throws IOException
+    {
+        final Path file = Files.createTempFile("matrix", ".bin");
+        try
+        {
+            final Xoroshiro128 breeder = new Xoroshiro128(SEED);
+            try (final AgentMatrix m = AgentMatrix.mapped(file, AGENTS))
+            {
+                m.randomizeWeights(breeder);
+                m.flush(0);
+                generation(m, 0, breeder); // Closed mid-run without a flush, as if the run had crashed
+                assertEquals(-1, m.persistedGeneration());
+            }
+            assertThrows(IllegalStateException.class, () -> AgentMatrix.mapped(file, AGENTS));
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test public void closedMatrixThrows() throws IOException
+    {
+        final Path file = Files.createTempFile("matrix", ".bin");
+        try
+        {
+            final AgentMatrix m = AgentMatrix.mapped(file, AGENTS);
+            m.randomizeWeights(new Xoroshiro128(SEED));
+            m.flush(0);
+            m.close();
+            m.close(); // Idempotent
+            assertThrows(IllegalStateException.class, m::persistedGeneration);
+            assertThrows(IllegalStateException.class, () -> m.flush(1));
+            assertThrows(IllegalStateException.class, () -> m.setWeight(0, 0)); // First mutation after a flush
+            assertThrows(IndexOutOfBoundsException.class, () -> m.weight(0));
+            assertThrows(IndexOutOfBoundsException.class, () -> m.fitness(0));
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void copy(final AgentMatrix from, final AgentMatrix to)
+    {
+        for (int i = 0; i < AGENTS * SITUATIONS; i++)
+            to.setWeight(i, from.weight(i));
+        for (int i = 0; i < AGENTS; i++)
+            to.setFitness(i, from.fitness(i));
+    }
+
+    private static void generation(final AgentMatrix m, final int gen, final Xoroshiro128 breeder)
+    {
+        m.evaluate(FITNESS, gen, SEED, ForkJoinPool.commonPool());
+        m.select(SURVIVORS);
+        m.repopulate(SURVIVORS, MUTATION_RATE, breeder);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import blackjack.card.Card;
+import blackjack.card.DealTape;
+import blackjack.player.HandState;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.CommonDealFitness;
+import genetic.fitness.SeedSequence;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestCommonDeal
+{
+    private static final long SEED = 5213821584128L;
+    private static final int BJ_SHOE_SIZE = 8, BJ_ROUNDS = 500, GENERATIONS = 40;
+    private static final float BJ_SHOE_PEN = 0.35f;
+
+    /* Records the cards dealt to the agent, see `round` */
+    private static final class RecordingAgent extends ConcreteAgent
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Card> cards = new ArrayList<>();
+
+        private RecordingAgent(final long seed, final int weight)
+        {
+            super(seed);
+            Arrays.fill(getWeights(), weight);
+        }
+
+        @Override public void accept(final Card card)
+        {
+            super.accept(card);
+            cards.add(card);
+        }
+
+        /* Cards dealt to the agent since the previous call */
+        private List<Card> round()
+        {
+            final List<Card> dealt = new ArrayList<>(cards);
+            cards.clear();
+            return dealt;
+        }
+    }
+
+    /* Agent which stands at the specified soft score, its decisions never draw from its generator */
+    private static ConcreteAgent standsAt(final int score)
+    {
+        final ConcreteAgent ca = new ConcreteAgent(SEED);
+        for (int state = 0; state < HandState.STATES; state++)
+        {
+            final int i = ConcreteAgent.weightIndex(state);
+            if (i >= 0) ca.getWeights()[i] = HandState.softScore(state) < score ? Integer.MAX_VALUE : 0;
+        }
+        return ca;
+    }
+
+    /* Two agents which only disagree on hands of 16 */
+    private static List<ConcreteAgent> deterministic()
+    {
+        return List.of(standsAt(16), standsAt(17));
+    }
+
+    @Test public void agentsAreDealtIdenticalCards()
+    {
+        final DealTape tape = new DealTape(BJ_SHOE_SIZE, BJ_ROUNDS, BJ_SHOE_PEN, SEED);
+        final RecordingAgent stands = new RecordingAgent(SEED, 0), hits = new RecordingAgent(SEED, Integer.MAX_VALUE);
+        final HeadsUpBlackjack a = new HeadsUpBlackjack(stands, tape.reader(), BJ_SHOE_PEN);
+        final HeadsUpBlackjack b = new HeadsUpBlackjack(hits, tape.reader(), BJ_SHOE_PEN);
+        for (int r = 0; r < BJ_ROUNDS; r++)
+        {
+            a.playRound();
+            b.playRound();
+            final List<Card> stood = stands.round(), hit = hits.round();
+            assertEquals(2, stood.size());
+            assertEquals(stood, hit.subList(0, 2)); // Hitting takes further cards without shifting anyone else's
+        }
+    }
+
+    @Test public void dealerCardsAreIndependentOfThePlayer()
+    {
+        final DealTape tape = new DealTape(BJ_SHOE_SIZE, BJ_ROUNDS, BJ_SHOE_PEN, SEED);
+        final DealTape.Reader a = tape.reader(), b = tape.reader();
+        for (int r = 0; r < BJ_ROUNDS; r++)
+        {
+            assertEquals(a.dealCode(), b.dealCode());
+            assertEquals(a.dealCode(), b.dealCode());
+            b.dealCode(); // Two cards never bust, so a third is always reserved
+            assertEquals(a.dealDealerCode(), b.dealDealerCode());
+            assertEquals(a.dealDealerCode(), b.dealDealerCode());
+            a.endRound();
+            b.endRound();
+            assertEquals(a.penetration(), b.penetration(), 0.0f);
+        }
+        assertThrows(NoSuchElementException.class, a::dealCode); // The tape is never replayed
+    }
+
+    @Test public void roundsOnlyReserveTheCardsTheyNeed()
+    {
+        /* A fixed block of 40 cards per round would fit only 3 rounds into 35% of an 8 deck shoe */
+        final DealTape tape = new DealTape(BJ_SHOE_SIZE, BJ_ROUNDS, BJ_SHOE_PEN, SEED);
+        assertTrue(tape.rounds() / (double)tape.shoes() > 15, tape.shoes() + " shoes");
+    }
+
+    @Test public void identicalAcrossThreadCounts()
+    {
+        final List<ConcreteAgent> agents = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+        {
+            final ConcreteAgent ca = new ConcreteAgent(SEED + i);
+            ca.randomizeWeights();
+            agents.add(ca);
+        }
+        final double[][] costs = new double[2][];
+        for (int t = 0; t < costs.length; t++)
+        {
+            final ForkJoinPool pool = new ForkJoinPool(t == 0 ? 1 : 4);
+            try
+            {
+                costs[t] = new CommonDealFitness(BJ_SHOE_SIZE, BJ_ROUNDS, BJ_SHOE_PEN, SEED, pool)
+                        .evaluate(deterministic(), 3);
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+        assertArrayEquals(costs[0], costs[1]);
+    }
+
+    @Test public void commonDealsReduceVarianceOfComparisons()
+    {
+        /* Cost difference between two deterministic agents, over several generations */
+        final CommonDealFitness common = new CommonDealFitness(BJ_SHOE_SIZE, BJ_ROUNDS, BJ_SHOE_PEN, SEED);
+        final double[] shared = new double[GENERATIONS], independent = new double[GENERATIONS];
+        for (int g = 0; g < GENERATIONS; g++)
+        {
+            final double[] costs = common.evaluate(deterministic(), g);
+            shared[g] = costs[0] - costs[1];
+            final List<ConcreteAgent> agents = deterministic();
+            for (int i = 0; i < agents.size(); i++)
+            {
+                final double cost = new HeadsUpBlackjack(agents.get(i), BJ_SHOE_SIZE,
+                        SeedSequence.seed(SEED, g, i), BJ_SHOE_PEN).playRounds(BJ_ROUNDS).cost();
+                independent[g] += i == 0 ? cost : -cost;
+            }
+        }
+        final double sharedVar = variance(shared), independentVar = variance(independent);
+        assertTrue(sharedVar < independentVar / 4, sharedVar + " vs " + independentVar);
+    }
+
+    private static double variance(final double[] x)
+    {
+        final double mean = Arrays.stream(x).average().orElse(0.0);
+        return Arrays.stream(x).map(v -> (v - mean) * (v - mean)).sum() / (x.length - 1);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.card.CompactShoe;
+import blackjack.card.Shoe;
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public final class TestCompactShoe
+{
+    private static final long[] SEEDS = { 0L, 42141451L, 5213821584128L };
+    private static final int[] DECKS = { 1, 8 };
+    private static final int SHUFFLES = 50;
+    private static final float PENETRATION = 0.35f;
+
+    @Test public void dealsSameCodesAsShoe()
+    {
+        for (final int decks : DECKS)
+            for (final long seed : SEEDS)
+            {
+                final Shoe shoe = new Shoe(decks, seed);
+                final CompactShoe compact = new CompactShoe(decks, seed);
+                assertEquals(shoe.size(), compact.size());
+                for (int s = 0; s < SHUFFLES; s++)
+                {
+                    // The final pass deals the whole shoe, the others stop part of the way through
+                    final int cards = s == SHUFFLES - 1 ? shoe.size() : (int)(shoe.size() * PENETRATION) + s % 3;
+                    for (int i = 0; i < cards; i++)
+                        assertEquals(shoe.deal().getCode(), compact.dealCode(),
+                                "Card #" + i + " after shuffle #" + s + " of seed " + seed + ", " + decks + " decks");
+                    assertEquals(shoe.penetration(), compact.penetration());
+                    shoe.shuffle();
+                    compact.shuffle();
+                }
+            }
+    }
+
+    @Test public void emptyShoeThrows()
+    {
+        final CompactShoe compact = new CompactShoe(1, SEEDS[1]);
+        for (int i = 0; i < compact.size(); i++)
+            compact.dealCode();
+        assertThrows(NoSuchElementException.class, compact::dealCode);
+    }
+}
@@ -18,11 +18,12 @@
 
 package test;
 
-import blackjack.Blackjack;
-import blackjack.player.Player;
+import blackjack.HeadsUpBlackjack;
 import genetic.population.Population;
 import genetic.Simulation;
 import genetic.agent.ConcreteAgent;
+import genetic.fitness.BasicStrategy;
+import genetic.fitness.SeedSequence;
 import genetic.gene.Crossover;
 import genetic.gene.Mutation;
 import genetic.gradient.BirdshotGradient;
@@ -31,9 +32,9 @@ import genetic.population.Repopulator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.DoubleSummaryStatistics;
-import java.util.Map;
 import java.util.Random;
 
 
@@ -45,6 +46,9 @@ public class TestConvergence
 
     private static final int BJ_SHOE_SIZE = 8, BJ_ROUNDS_PER_AGENT = 100000;
     private static final float BJ_SHOE_PEN = 0.35f;
+    /* Optimal policy for the shoe, solved once and cached across runs */
+    private static final BasicStrategy optimal =
+            BasicStrategy.load(Path.of(System.getProperty("java.io.tmpdir")), BJ_SHOE_SIZE);
 
     private static final Random generator = new Random(SEED);
     private static final Repopulator repopulator = Repopulator.TWO_PASS_FISCHER_YATES;
@@ -55,9 +59,32 @@ public class TestConvergence
 
     private Population<ConcreteAgent> pop;
 
-    /* Each Blackjack game needs its own seed, but could be on its own thread.
-    * 'Random' class is not synchronized, so protect it via synchronized method. */
-    private synchronized long iterateSeed() { return generator.nextLong(); }
+    /* Each Blackjack game needs its own seed, but could be on its own thread. Seeds are derived from the generation
+     * & the agent's index within the population, see SeedSequence, so costs do not depend on thread scheduling. */
+    private volatile int evaluatedGenerations = 0;
+    private long seedOf(final int index) { return SeedSequence.seed(SEED, evaluatedGenerations, index); }
+
+    /* Agent with the lowest sampled cost of the generation. Its sampled cost is biased low by the selection,
+     * so regret is measured exactly from its weights instead, see BasicStrategy#regret */
+    private ConcreteAgent bestAgent;
+    private double bestCost = Double.POSITIVE_INFINITY;
+    private int bestIndex;
+
+    /* Ties go to the lowest index, so the best agent does not depend on thread scheduling either */
+    private synchronized void offer(final ConcreteAgent agent, final int index, final double cost)
+    {
+        if (cost > bestCost || cost == bestCost && index > bestIndex) return;
+        bestCost = cost;
+        bestIndex = index;
+        bestAgent = agent;
+    }
+
+    private synchronized double bestRegret()
+    {
+        final double regret = optimal.regret(bestAgent.getWeights());
+        bestCost = Double.POSITIVE_INFINITY;
+        return regret;
+    }
 
     @BeforeEach public void setup()
     {
@@ -66,15 +93,10 @@ public class TestConvergence
             @Override public double evaluateFitness(final ConcreteAgent agent)
             {
                 // Each Blackjack game needs a new seed, otherwise all agents will play the exact same hands & games
-                final Blackjack bj = new Blackjack(BJ_SHOE_SIZE, iterateSeed(), BJ_SHOE_PEN);
-                bj.dealIn(agent);
-                final Map<Player, Integer> m = bj.getResults();
-                double cost = 0.0;
-                for (int i = 0; i < BJ_ROUNDS_PER_AGENT; i++)
-                {
-                    bj.playRound();
-                    cost += 1.0 - m.get(agent); // shift scores into win: 0, push: 1, loss: 2
-                }
+                final int index = getPopulation().indexOf(agent);
+                final HeadsUpBlackjack bj = new HeadsUpBlackjack(agent, BJ_SHOE_SIZE, seedOf(index), BJ_SHOE_PEN);
+                final double cost = bj.playRounds(BJ_ROUNDS_PER_AGENT).cost(); // shift scores into win: 0, push: 1, loss: 2
+                offer(agent, index, cost);
                 return cost;
             }
 
@@ -93,9 +115,10 @@ public class TestConvergence
         {
             @Override public void genCostStatsCallback(DoubleSummaryStatistics dss, int generation)
             {
-                System.out.format("Generation #%-4d   Average: %-10.3f   Best: %-10.3f   Worst: %-10.3f\n",
+                System.out.format("Generation #%-4d   Average: %-10.3f   Best: %-10.3f   Worst: %-10.3f   Regret: %.4f\n",
                         generation, dss.getAverage() / BJ_ROUNDS_PER_AGENT, dss.getMin() / BJ_ROUNDS_PER_AGENT,
-                        dss.getMax() / BJ_ROUNDS_PER_AGENT);
+                        dss.getMax() / BJ_ROUNDS_PER_AGENT, bestRegret());
+                evaluatedGenerations++; // Only called between generations
             }
         };
         sim.run(pop, GENERATION_TARGET, generator, gradient, true);
@@ -0,0 +1,90 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.DealerOutcomes;
+import genetic.fitness.InfiniteDeckFitness;
+import genetic.fitness.SettledFitness;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestDealerOutcomes
+{
+    private static final int DECKS = 6, ROUNDS = 200000;
+    private static final float PENETRATION = 0.5f;
+
+    /* Weighting the upcard distributions by their draw probability recovers the dealer's overall outcome */
+    @Test public void infiniteMatchesDealerOutcomes()
+    {
+        final double[] mixed = new double[DealerOutcomes.OUTCOMES];
+        for (int upcard = 1; upcard <= 10; upcard++)
+        {
+            final double[] d = DealerOutcomes.infinite(upcard);
+            double sum = 0;
+            for (int o = 0; o < d.length; o++)
+            {
+                sum += d[o];
+                mixed[o] += (upcard == 10 ? 4.0 : 1.0) / 13 * d[o];
+            }
+            assertEquals(1.0, sum, 1e-12);
+        }
+        assertArrayEquals(InfiniteDeckFitness.dealerOutcomes(), mixed, 1e-12);
+    }
+
+    @Test public void finiteApproachesInfiniteAndIsCached()
+    {
+        final DealerOutcomes table = new DealerOutcomes(64, 1);
+        final int[] counts = new int[11];
+        for (int v = 1; v <= 10; v++)
+            counts[v] = (v == 10 ? 16 : 4) * 15;
+        counts[6]--; // Upcard
+
+        final double[] d = table.finite(6, counts);
+        assertArrayEquals(DealerOutcomes.infinite(6), d, 5e-3);
+        assertSame(d, table.finite(6, counts));
+        assertEquals(1, table.getHits());
+        assertEquals(1, table.getMisses());
+
+        /* Coarse buckets treat nearby compositions alike */
+        final DealerOutcomes coarse = new DealerOutcomes(64, 8);
+        final double[] c = coarse.finite(6, counts);
+        counts[10]--;
+        assertSame(c, coarse.finite(6, counts));
+    }
+
+    /* Settling by expectation removes the dealer's luck, but not their expected outcome */
+    @Test public void settledCostMatchesSimulation()
+    {
+        final ConcreteAgent a = new ConcreteAgent(3L), b = new ConcreteAgent(3L);
+        a.randomizeWeights();
+        b.randomizeWeights();
+        final double simulated = new HeadsUpBlackjack(a, DECKS, 11L, PENETRATION).playRounds(ROUNDS).cost() / ROUNDS;
+        final SettledFitness settled = new SettledFitness(DECKS, ROUNDS, PENETRATION, new DealerOutcomes(1 << 12, 16));
+        final double expected = settled.evaluateFitness(b, 11L) / ROUNDS;
+        assertEquals(simulated, expected, 0.01);
+        assertTrue(settled.getDealerOutcomes().getHits() > 0);
+    }
+}
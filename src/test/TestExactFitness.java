@@ -0,0 +1,122 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import blackjack.RoundTally;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.CompositionCache;
+import genetic.fitness.InfiniteDeckFitness;
+import genetic.fitness.ShoeFitness;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestExactFitness
+{
+    private static final long SEED = 5213821584128L;
+    private static final int BJ_SHOE_SIZE = 8, BJ_ROUNDS = 4000000;
+    private static final float BJ_SHOE_PEN = 0.35f;
+    /* Standard errors allowed between exact and simulated cost, ~0.002 at 4 * 10^6 rounds */
+    private static final double SIGMAS = 4;
+
+    private static RoundTally simulate(final ConcreteAgent agent)
+    {
+        return new HeadsUpBlackjack(agent, BJ_SHOE_SIZE, SEED, BJ_SHOE_PEN).playRounds(BJ_ROUNDS);
+    }
+
+    /* Compares against the mean cost per round, within SIGMAS of its sampled standard error */
+    private static void assertMatches(final double expected, final RoundTally tally)
+    {
+        final double rounds = tally.getRounds();
+        final double pushes = tally.getPushes() / rounds, losses = tally.getLosses() / rounds;
+        final double mean = pushes + 2 * losses, variance = pushes + 4 * losses - mean * mean;
+        assertEquals(expected, mean, SIGMAS * Math.sqrt(variance / rounds));
+    }
+
+    @Test public void probabilitiesSumToOne()
+    {
+        final ConcreteAgent ca = new ConcreteAgent(SEED);
+        ca.randomizeWeights();
+        assertEquals(1.0, Arrays.stream(InfiniteDeckFitness.expectedResults(ca.getWeights())).sum(), 1e-12);
+        assertEquals(1.0, Arrays.stream(InfiniteDeckFitness.dealerOutcomes()).sum(), 1e-12);
+    }
+
+    @Test public void matchesSimulation()
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            final ConcreteAgent ca = new ConcreteAgent(SEED + i);
+            ca.randomizeWeights();
+            assertMatches(InfiniteDeckFitness.expectedCost(ca.getWeights()), simulate(ca));
+        }
+    }
+
+    @Test public void matchesSimulationOfDeterministicPolicies()
+    {
+        for (final int weight : new int[] { 0, Integer.MAX_VALUE })
+        {
+            final ConcreteAgent ca = new ConcreteAgent(SEED);
+            Arrays.fill(ca.getWeights(), weight);
+            assertMatches(InfiniteDeckFitness.expectedCost(ca.getWeights()), simulate(ca));
+        }
+    }
+
+    @Test public void matchesSimulationOfFreshSingleDeck()
+    {
+        // Zero penetration shuffles after every round, so each round is dealt from a full shoe
+        final ShoeFitness sf = new ShoeFitness(1);
+        final CompositionCache dealer = sf.getDealerCache();
+        long misses = 0;
+        for (int i = 0; i < 2; i++)
+        {
+            final ConcreteAgent ca = new ConcreteAgent(SEED + i);
+            ca.randomizeWeights();
+            final double expected = sf.expectedCost(ca.getWeights());
+            assertMatches(expected, new HeadsUpBlackjack(ca, 1, SEED, 0.0f).playRounds(BJ_ROUNDS));
+            if (i == 0) misses = dealer.getMisses();
+        }
+        // Second agent reaches the same dealer compositions, so it only hits what the first one missed
+        assertTrue(misses > 0);
+        assertEquals(misses, dealer.getMisses());
+        assertEquals(misses, dealer.getHits());
+    }
+
+    @Test public void compositionCacheCountsLookups()
+    {
+        final CompositionCache cache = new CompositionCache(2);
+        final double[] value = { 1.0 };
+        assertNull(cache.get(1L));
+        cache.put(1L, value);
+        assertSame(value, cache.get(1L));
+        cache.put(2L, value);
+        cache.put(3L, value); // Evicts 1, the least recently used
+        assertNull(cache.get(1L));
+        assertSame(value, cache.get(3L));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.card.Card;
+import blackjack.card.Face;
+import blackjack.card.Suit;
+import genetic.agent.ConcreteAgent;
+import org.junit.jupiter.api.Test;
+import util.CounterRandom;
+import util.FastRandom;
+import util.Xoroshiro128;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestFastRandom
+{
+    private static final long SEED = 5213821584128L;
+    private static final int SAMPLES = 1000000;
+
+    @Test public void uniformBoundedInts()
+    {
+        for (final FastRandom r : new FastRandom[] { new Xoroshiro128(SEED), new CounterRandom(SEED) })
+        {
+            final int bound = 13;
+            final int[] counts = new int[bound];
+            for (int i = 0; i < SAMPLES; i++)
+                counts[r.nextInt(bound)]++;
+            for (final int c : counts) // Within ~6 standard deviations of the expected count
+                assertEquals(SAMPLES / (double)bound, c, 6 * Math.sqrt(SAMPLES / (double)bound));
+        }
+    }
+
+    @Test public void splitIsDeterministic()
+    {
+        final Xoroshiro128 a = new Xoroshiro128(SEED), b = new Xoroshiro128(SEED);
+        final FastRandom sa = a.split(), sb = b.split();
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(sa.nextLong(), sb.nextLong());
+            assertEquals(a.nextLong(), b.nextLong());
+        }
+        assertTrue(sa.nextLong() != a.nextLong()); // Parent has jumped ahead of its split
+    }
+
+    @Test public void counterReplaysDecisions()
+    {
+        final CounterRandom r = new CounterRandom(SEED);
+        final ConcreteAgent ca = new ConcreteAgent(r);
+        ca.randomizeWeights();
+        ca.accept(Card.fromCode(Card.codeOf(Face.SEVEN, Suit.HEARTS)));
+        ca.accept(Card.fromCode(Card.codeOf(Face.SIX, Suit.CLUBS)));
+
+        final long decisionsStart = r.getCounter();
+        final boolean[] decisions = new boolean[100];
+        for (int i = 0; i < decisions.length; i++)
+            decisions[i] = ca.hit();
+        r.setCounter(decisionsStart);
+        for (final boolean d : decisions)
+            assertEquals(d, ca.hit());
+    }
+}
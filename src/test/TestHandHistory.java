@@ -0,0 +1,133 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.BJEventTranslator;
+import blackjack.Blackjack;
+import blackjack.BlackjackWatchable;
+import blackjack.card.Card;
+import blackjack.player.Dealer;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+import io.HandHistoryReader;
+import io.HandHistoryWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public final class TestHandHistory
+{
+    private static final int SEATS = 3, ROUNDS = 5000;
+
+    /* Renders every event, identifying players by the order they are first seen rather than by name */
+    private static final class Transcript implements BlackjackWatchable
+    {
+        private final List<String> events = new ArrayList<>();
+        private final Map<Player, Integer> ids = new IdentityHashMap<>();
+
+        private String id(final Player p)
+        {
+            return p instanceof Dealer ? "D" : Integer.toString(ids.computeIfAbsent(p, k -> ids.size()));
+        }
+
+        @Override public void roundStart() { events.add("start"); }
+        @Override public void cardDealt(final Player p, final Card c) { events.add(id(p) + " dealt " + c + " " + p.getField()); }
+        @Override public void dealerHideCard(final Dealer d) { events.add("hide " + d.getField()); }
+        @Override public void dealerRevealCard(final Dealer d, final Card c, final boolean afterRound)
+        {
+            events.add("reveal " + c + " " + afterRound + " " + d.getField());
+        }
+        @Override public void playerBust(final Player p) { events.add(id(p) + " bust"); }
+        @Override public void playerBlackjack(final Player p) { events.add(id(p) + " blackjack"); }
+        @Override public void reset(final Map<Player, Integer> results)
+        {
+            final StringBuilder sb = new StringBuilder("results");
+            for (final Map.Entry<Player, Integer> e : results.entrySet())
+                sb.append(' ').append(id(e.getKey())).append('=').append(e.getValue()).append(e.getKey().getField());
+            events.add(sb.toString());
+        }
+    }
+
+    /* Forwards events to both a transcript and the log */
+    private static BlackjackWatchable tee(final BlackjackWatchable a, final BlackjackWatchable b)
+    {
+        return new BlackjackWatchable()
+        {
+            @Override public void roundStart() { a.roundStart(); b.roundStart(); }
+            @Override public void cardDealt(final Player p, final Card c) { a.cardDealt(p, c); b.cardDealt(p, c); }
+            @Override public void dealerHideCard(final Dealer d) { a.dealerHideCard(d); b.dealerHideCard(d); }
+            @Override public void dealerRevealCard(final Dealer d, final Card c, final boolean afterRound)
+            {
+                a.dealerRevealCard(d, c, afterRound);
+                b.dealerRevealCard(d, c, afterRound);
+            }
+            @Override public void playerBust(final Player p) { a.playerBust(p); b.playerBust(p); }
+            @Override public void playerBlackjack(final Player p) { a.playerBlackjack(p); b.playerBlackjack(p); }
+            @Override public void reset(final Map<Player, Integer> results) { a.reset(results); b.reset(results); }
+        };
+    }
+
+    @Test public void replayMatchesRecording() throws IOException
+    {
+        final Path file = Files.createTempFile("hand-history", ".bin");
+        final Transcript live = new Transcript();
+        try (HandHistoryWriter writer = new HandHistoryWriter(file))
+        {
+            final Blackjack bj = new BJEventTranslator(tee(live, writer), 8, 42141451L, 0.35f);
+            for (int s = 0; s < SEATS; s++)
+            {
+                final ConcreteAgent ca = new ConcreteAgent(s);
+                ca.randomizeWeights();
+                bj.dealIn(ca);
+            }
+            for (int r = 0; r < ROUNDS; r++)
+                bj.playRound();
+        }
+
+        final Transcript replayed = new Transcript();
+        assertEquals(ROUNDS, HandHistoryReader.replay(file, replayed));
+        assertEquals(live.events.size(), replayed.events.size());
+        for (int i = 0; i < live.events.size(); i++)
+            assertEquals(live.events.get(i), replayed.events.get(i), "Event #" + i);
+        Files.delete(file);
+    }
+
+    @Test public void closedWriterRejectsEvents() throws IOException
+    {
+        final Path file = Files.createTempFile("hand-history", ".bin");
+        final HandHistoryWriter writer = new HandHistoryWriter(file);
+        writer.roundStart();
+        writer.close();
+        writer.close(); // Idempotent
+        assertThrows(IllegalStateException.class, writer::roundStart);
+        assertEquals(1, writer.getRecords());
+        assertEquals(0, HandHistoryReader.replay(file, new Transcript())); // Started, never concluded
+        Files.delete(file);
+    }
+}
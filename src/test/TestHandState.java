@@ -0,0 +1,74 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.player.HandState;
+import genetic.agent.ConcreteAgent;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public final class TestHandState
+{
+    private static final int HANDS = 100000;
+
+    /* Walks random hands through the automaton alongside the score arithmetic it replaces */
+    @Test public void matchesScoreArithmetic()
+    {
+        final SplittableRandom random = new SplittableRandom(7L);
+        for (int h = 0; h < HANDS; h++)
+        {
+            int state = HandState.EMPTY, hard = 0;
+            boolean ace = false;
+            while (hard <= 21)
+            {
+                final int value = 1 + random.nextInt(10);
+                state = HandState.next(state, value);
+                hard += value;
+                ace |= value == 1;
+
+                final int soft = ace && hard + 10 <= 21 ? hard + 10 : hard;
+                assertEquals(hard > 21, HandState.isBust(state));
+                assertEquals(soft == 21, HandState.isTwentyOne(state));
+                assertEquals(ace, HandState.hasAce(state));
+                if (hard <= 21)
+                {
+                    assertEquals(hard, HandState.hardScore(state));
+                    assertEquals(soft, HandState.softScore(state));
+                }
+            }
+        }
+    }
+
+    @Test public void weightIndexMatchesSituations()
+    {
+        int decisions = 0;
+        for (int state = 0; state < HandState.STATES; state++)
+        {
+            final int index = ConcreteAgent.weightIndex(state);
+            if (index < 0) continue;
+            decisions++;
+            assertEquals(ConcreteAgent.weightIndex(HandState.hardScore(state), HandState.hasAce(state)), index);
+        }
+        assertEquals(ConcreteAgent.SITUATIONS, decisions);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.Blackjack;
+import blackjack.HeadsUpBlackjack;
+import blackjack.RoundTally;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+public final class TestHeadsUp
+{
+    private static final long[] SEEDS = { 0L, 42141451L, 5213821584128L };
+    private static final int BJ_SHOE_SIZE = 8, BJ_ROUNDS = 100000;
+    private static final float BJ_SHOE_PEN = 0.35f;
+
+    /* Identical agents: same weights and same decision sequence */
+    private static ConcreteAgent agent(final long seed)
+    {
+        final ConcreteAgent ca = new ConcreteAgent(seed);
+        ca.randomizeWeights();
+        return ca;
+    }
+
+    @Test public void sameOutcomesAsBlackjack()
+    {
+        for (final long seed : SEEDS)
+        {
+            final ConcreteAgent a = agent(seed), b = agent(seed);
+            final Blackjack bj = new Blackjack(BJ_SHOE_SIZE, seed, BJ_SHOE_PEN);
+            bj.dealIn(a);
+            final Map<Player, Integer> results = bj.getResults();
+            final HeadsUpBlackjack hu = new HeadsUpBlackjack(b, BJ_SHOE_SIZE, seed, BJ_SHOE_PEN);
+
+            for (int i = 0; i < BJ_ROUNDS; i++)
+            {
+                bj.playRound();
+                assertEquals((int)results.get(a), hu.playRound(), "Round #" + i + " of seed " + seed);
+            }
+        }
+    }
+
+    @Test public void tallyMatchesBlackjack()
+    {
+        final long seed = SEEDS[1];
+        final ConcreteAgent a = agent(seed), b = agent(seed);
+        final Blackjack bj = new Blackjack(BJ_SHOE_SIZE, seed, BJ_SHOE_PEN);
+        bj.dealIn(a);
+        final Map<Player, Integer> results = bj.getResults();
+        double cost = 0.0;
+        for (int i = 0; i < BJ_ROUNDS; i++)
+        {
+            bj.playRound();
+            cost += 1.0 - results.get(a);
+        }
+
+        final RoundTally tally = new HeadsUpBlackjack(b, BJ_SHOE_SIZE, seed, BJ_SHOE_PEN).playRounds(BJ_ROUNDS);
+        assertEquals(BJ_ROUNDS, tally.getRounds());
+        assertEquals(cost, tally.cost(), 0.0);
+    }
+}
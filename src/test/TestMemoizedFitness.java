@@ -0,0 +1,72 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import genetic.agent.MatrixAgent;
+import genetic.fitness.MemoizedFitness;
+import genetic.population.AgentMatrix;
+import org.junit.jupiter.api.Test;
+import util.Xoroshiro128;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestMemoizedFitness
+{
+    private static final long SEED = 99120773L;
+    private static final int AGENTS = 400, SURVIVORS = 200, ROUNDS = 1000, TOP_UP = 100;
+
+    @Test public void survivorsAreToppedUp()
+    {
+        final MemoizedFitness<MatrixAgent> f = new MemoizedFitness<>(MatrixAgent::getWeights, ROUNDS, TOP_UP, 2, 0.35f);
+        final AgentMatrix m = new AgentMatrix(AGENTS);
+        final Xoroshiro128 breeder = new Xoroshiro128(SEED);
+        m.randomizeWeights(breeder);
+
+        m.evaluate(f, 0, SEED, ForkJoinPool.commonPool());
+        f.sweep();
+        assertEquals((long)AGENTS * ROUNDS, f.getRoundsPlayed());
+        m.select(SURVIVORS);
+        m.repopulate(SURVIVORS, 0.05f, breeder);
+
+        final long before = f.getRoundsPlayed();
+        m.evaluate(f, 1, SEED, ForkJoinPool.commonPool());
+        f.sweep();
+        // Children are new, survivors only play their top-up
+        assertEquals((long)(AGENTS - SURVIVORS) * ROUNDS + (long)SURVIVORS * TOP_UP, f.getRoundsPlayed() - before);
+        assertEquals(SURVIVORS, f.getHits());
+        assertEquals(AGENTS, f.size()); // Discarded agents were swept
+
+        final int[] survivor = new MatrixAgent(m, 0, new Xoroshiro128(SEED)).getWeights();
+        final MemoizedFitness.Estimate e = f.estimate(survivor);
+        assertEquals(ROUNDS + TOP_UP, e.getRounds());
+        assertEquals(m.fitness(0), e.mean() * ROUNDS, 1e-9);
+        assertTrue(e.standardError() > 0 && e.standardError() < 0.1);
+    }
+
+    @Test public void rejectsInvalidShoeSize()
+    {
+        assertThrows(IllegalArgumentException.class,
+                () -> new MemoizedFitness<>(MatrixAgent::getWeights, ROUNDS, TOP_UP, 0, 0.35f));
+    }
+}
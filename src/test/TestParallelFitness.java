@@ -0,0 +1,82 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.ParallelFitness;
+import genetic.fitness.SeededFitness;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+
+public final class TestParallelFitness
+{
+    private static final long SEED = 5213821584128L;
+    private static final int NUM_AGENTS = 200, GENERATIONS = 3;
+    private static final int BJ_SHOE_SIZE = 8, BJ_ROUNDS_PER_AGENT = 2000;
+    private static final float BJ_SHOE_PEN = 0.35f;
+
+    private static final SeededFitness<ConcreteAgent> fitness = (agent, seed) ->
+            new HeadsUpBlackjack(agent, BJ_SHOE_SIZE, seed, BJ_SHOE_PEN).playRounds(BJ_ROUNDS_PER_AGENT).cost();
+
+    private static List<ConcreteAgent> population()
+    {
+        final Random generator = new Random(SEED);
+        final List<ConcreteAgent> agents = new ArrayList<>();
+        for (int i = 0; i < NUM_AGENTS; i++)
+        {
+            final ConcreteAgent ca = new ConcreteAgent(generator.nextLong());
+            ca.randomizeWeights();
+            agents.add(ca);
+        }
+        return agents;
+    }
+
+    private static double[][] run(final int threads)
+    {
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            final ParallelFitness<ConcreteAgent> pf = new ParallelFitness<>(fitness, SEED, pool);
+            final List<ConcreteAgent> agents = population();
+            final double[][] costs = new double[GENERATIONS][];
+            for (int g = 0; g < GENERATIONS; g++)
+                costs[g] = pf.evaluate(agents, g);
+            return costs;
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test public void identicalAcrossThreadCounts()
+    {
+        final double[][] serial = run(1), parallel = run(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        for (int g = 0; g < GENERATIONS; g++)
+            assertArrayEquals(serial[g], parallel[g]);
+    }
+}
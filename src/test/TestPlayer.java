@@ -0,0 +1,61 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.card.Card;
+import blackjack.card.Face;
+import blackjack.card.Suit;
+import blackjack.player.Dealer;
+import blackjack.player.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestPlayer
+{
+    private static final Card ACE = Card.fromCode(Card.codeOf(Face.ACE, Suit.SPADES)),
+            KING = Card.fromCode(Card.codeOf(Face.KING, Suit.HEARTS));
+
+    @Test public void untrackedFieldIsRejected()
+    {
+        final Player p = new Dealer();
+        p.accept(ACE);
+        assertEquals(11, p.getSoftScore());
+        assertThrows(IllegalStateException.class, p::getField);
+    }
+
+    @Test public void trackedFieldRecordsCards()
+    {
+        final Player p = new Dealer();
+        p.trackField();
+        p.accept(ACE);
+        p.accept(KING);
+        assertEquals(List.of(ACE, KING), p.getField());
+        assertTrue(p.hasBlackjack());
+
+        p.reset();
+        assertTrue(p.getField().isEmpty());
+        assertEquals(0, p.getHardScore());
+    }
+}
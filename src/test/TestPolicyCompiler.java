@@ -0,0 +1,109 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import blackjack.player.HandState;
+import genetic.agent.CompiledAgent;
+import genetic.agent.ConcreteAgent;
+import genetic.agent.Policy;
+import genetic.agent.PolicyCompiler;
+import genetic.fitness.BasicStrategy;
+import org.junit.jupiter.api.Test;
+import util.Xoroshiro128;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+public final class TestPolicyCompiler
+{
+    private static final long SEED = 42141451L;
+    private static final int BJ_SHOE_SIZE = 8, BJ_ROUNDS = 100000;
+    private static final float BJ_SHOE_PEN = 0.35f;
+
+    /* Randomized weights are all stochastic, so each decision draws exactly as the interpreted agent's */
+    @Test public void stochasticWeightsMatchAgent()
+    {
+        final ConcreteAgent interpreted = new ConcreteAgent(SEED);
+        interpreted.randomizeWeights();
+        final ConcreteAgent source = new ConcreteAgent(SEED);
+        source.randomizeWeights();
+        assertSameRounds(interpreted, new CompiledAgent(source.getWeights(), generatorAfterWeights()));
+
+        /* CompiledAgent interprets weights which are all stochastic, so compile them directly */
+        final Policy compiled = PolicyCompiler.compile(source.getWeights());
+        final Xoroshiro128 a = new Xoroshiro128(SEED), b = new Xoroshiro128(SEED);
+        for (int i = 0; i < BJ_ROUNDS; i++)
+        {
+            final int state = i % HandState.STATES;
+            final int situation = ConcreteAgent.weightIndex(state);
+            if (situation >= 0)
+                assertEquals(source.getWeights()[situation] > a.nextInt(Integer.MAX_VALUE), compiled.hit(state, b));
+        }
+    }
+
+    /* Deterministic weights never consult the generator */
+    @Test public void deterministicWeightsMatchAgent()
+    {
+        final int[] weights = BasicStrategy.solve(0).getWeights();
+        final ConcreteAgent interpreted = new ConcreteAgent(SEED);
+        System.arraycopy(weights, 0, interpreted.getWeights(), 0, weights.length);
+        assertSameRounds(interpreted, new CompiledAgent(weights, new Xoroshiro128(~SEED)));
+    }
+
+    /* States without a situation throw, as indexing the interpreted agent's weights does */
+    @Test public void invalidStatesThrow()
+    {
+        assertInvalidStatesThrow(PolicyCompiler.compile(BasicStrategy.solve(0).getWeights()));
+        final ConcreteAgent random = new ConcreteAgent(SEED);
+        random.randomizeWeights();
+        assertInvalidStatesThrow(new CompiledAgent(random.getWeights(), new Xoroshiro128(SEED)).getPolicy());
+    }
+
+    private static void assertInvalidStatesThrow(final Policy policy)
+    {
+        final Xoroshiro128 generator = new Xoroshiro128(SEED);
+        for (int state = 0; state < HandState.STATES; state++)
+        {
+            final int s = state;
+            if (ConcreteAgent.weightIndex(s) < 0)
+                assertThrows(ArrayIndexOutOfBoundsException.class, () -> policy.hit(s, generator));
+            else policy.hit(s, generator);
+        }
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> policy.hit(-1, generator));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> policy.hit(HandState.STATES, generator));
+    }
+
+    /* Generator of a ConcreteAgent once its weights have been randomized */
+    private static Xoroshiro128 generatorAfterWeights()
+    {
+        final Xoroshiro128 generator = new Xoroshiro128(SEED);
+        new ConcreteAgent(generator).randomizeWeights();
+        return generator;
+    }
+
+    private static void assertSameRounds(final ConcreteAgent interpreted, final CompiledAgent compiled)
+    {
+        final HeadsUpBlackjack a = new HeadsUpBlackjack(interpreted, BJ_SHOE_SIZE, SEED, BJ_SHOE_PEN);
+        final HeadsUpBlackjack b = new HeadsUpBlackjack(compiled, BJ_SHOE_SIZE, SEED, BJ_SHOE_PEN);
+        for (int i = 0; i < BJ_ROUNDS; i++)
+            assertEquals(a.playRound(), b.playRound(), "Round #" + i);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.RacingFitness;
+import genetic.fitness.SeedSequence;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestRacingFitness
+{
+    private static final long SEED = 5213821584128L;
+    private static final int NUM_AGENTS = 60, GENERATION = 2;
+    private static final int BJ_SHOE_SIZE = 8, BJ_MAX_ROUNDS = 4000, BJ_INCREMENT = 250;
+    private static final float BJ_SHOE_PEN = 0.35f, SURVIVAL_RATE = 0.5f;
+    private static final double CONFIDENCE = 3.0;
+
+    /* Agents are rebuilt for each evaluation, as playing consumes their decision generators */
+    private static List<ConcreteAgent> population()
+    {
+        final List<ConcreteAgent> agents = new ArrayList<>();
+        for (int i = 0; i < NUM_AGENTS; i++)
+        {
+            final ConcreteAgent ca = new ConcreteAgent(SEED + i);
+            ca.randomizeWeights();
+            agents.add(ca);
+        }
+        return agents;
+    }
+
+    private static Set<Integer> survivors(final double[] costs)
+    {
+        return IntStream.range(0, costs.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> costs[i]))
+                .limit(Math.round(costs.length * SURVIVAL_RATE))
+                .collect(Collectors.toSet());
+    }
+
+    @Test public void selectsTheSurvivorsOfAFullEvaluation()
+    {
+        final List<ConcreteAgent> agents = population();
+        final double[] full = new double[NUM_AGENTS];
+        for (int i = 0; i < NUM_AGENTS; i++)
+            full[i] = new HeadsUpBlackjack(agents.get(i), BJ_SHOE_SIZE, SeedSequence.seed(SEED, GENERATION, i),
+                    BJ_SHOE_PEN).playRounds(BJ_MAX_ROUNDS).cost();
+
+        final RacingFitness racing = new RacingFitness(BJ_MAX_ROUNDS, BJ_INCREMENT, SURVIVAL_RATE, CONFIDENCE,
+                BJ_SHOE_SIZE, BJ_SHOE_PEN, SEED);
+        final double[] raced = racing.evaluate(population(), GENERATION);
+
+        assertEquals(survivors(full), survivors(raced));
+        assertTrue(racing.getRoundsPlayed() < (long)NUM_AGENTS * BJ_MAX_ROUNDS * 3 / 4, racing.getRoundsPlayed() + " rounds");
+        /* Agents raced to the maximum play the same table as a full evaluation, so their costs are exact */
+        int exact = 0;
+        for (int i = 0; i < NUM_AGENTS; i++)
+            if (raced[i] == full[i]) exact++;
+        assertTrue(exact > 0);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import genetic.population.AgentMatrix;
+import org.junit.jupiter.api.Test;
+import util.Xoroshiro128;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestSelection
+{
+    private static final long SEED = 31337004211L;
+
+    @Test public void matchesFullSortSequential()
+    {
+        matchesFullSort(5000);
+    }
+
+    @Test public void matchesFullSortParallel()
+    {
+        matchesFullSort(100000);
+    }
+
+    private static void matchesFullSort(final int agents)
+    {
+        final Xoroshiro128 r = new Xoroshiro128(SEED);
+        final AgentMatrix m = new AgentMatrix(agents);
+        final double[] costs = new double[agents];
+        for (int i = 0; i < agents; i++) // Integer costs tie often, like tallied round costs
+            costs[i] = r.nextInt(50) == 0 ? Double.NaN : r.nextInt(2000);
+        for (int i = 0; i < agents; i++)
+            m.setFitness(i, costs[i]);
+
+        /* Reference: stable sort by cost, NaN last, ties broken by index */
+        final int[] sorted = IntStream.range(0, agents).boxed()
+                .sorted(Comparator.comparingDouble(i -> costs[i])).mapToInt(Integer::intValue).toArray();
+
+        assertArrayEquals(Arrays.copyOf(sorted, 10), m.best(10));
+        for (final int survivors : new int[] { 0, 1, agents / 2, agents - agents / 50 + 7, agents })
+        {
+            final AgentMatrix copy = new AgentMatrix(agents);
+            for (int i = 0; i < agents; i++)
+                copy.setFitness(i, costs[i]);
+            copy.select(survivors);
+
+            final double[] expected = Arrays.stream(sorted, 0, survivors).mapToDouble(i -> costs[i]).sorted().toArray();
+            final double[] actual = IntStream.range(0, survivors).mapToDouble(copy::fitness).sorted().toArray();
+            assertArrayEquals(expected, actual);
+            for (int i = survivors; i < agents; i++) // Discarded agents cost no less than the survivors
+                assertTrue(survivors == 0 || Double.compare(copy.fitness(i), expected[survivors - 1]) >= 0);
+        }
+    }
+}
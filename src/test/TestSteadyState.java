@@ -0,0 +1,79 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import genetic.fitness.InfiniteDeckFitness;
+import genetic.population.AgentMatrix;
+import genetic.population.SteadyStateEvolution;
+import org.junit.jupiter.api.Test;
+import util.Xoroshiro128;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static genetic.agent.ConcreteAgent.SITUATIONS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestSteadyState
+{
+    private static final long SEED = 4419027731L;
+    private static final int AGENTS = 500, TOURNAMENT = 4, BIRTHS = 20000;
+    private static final float MUTATION_RATE = 0.05f;
+
+    @Test public void poolImprovesWithoutGenerations()
+    {
+        final AgentMatrix m = new AgentMatrix(AGENTS);
+        m.randomizeWeights(new Xoroshiro128(SEED));
+        final SteadyStateEvolution ss = evolution(m);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            ss.run(0, 0.0, 4, pool); // Evaluates the initial pool only
+            final double initialMean = m.fitnessStatistics().getAverage(), initialBest = ss.getBestCost();
+            ss.run(BIRTHS, 0.0, 4, pool);
+
+            assertEquals(BIRTHS, ss.getBirths());
+            assertTrue(ss.getReplacements() > 0);
+            assertTrue(m.fitnessStatistics().getAverage() < initialMean);
+            assertTrue(ss.getBestCost() <= initialBest);
+            assertEquals(ss.getBestCost(), m.fitnessStatistics().getMin()); // Every cost entered the pool
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    @Test public void singleWorkerIsReproducible()
+    {
+        final AgentMatrix a = new AgentMatrix(AGENTS), b = new AgentMatrix(AGENTS);
+        a.randomizeWeights(new Xoroshiro128(SEED));
+        b.randomizeWeights(new Xoroshiro128(SEED));
+        evolution(a).run(BIRTHS / 10, 0.0, 1, ForkJoinPool.commonPool());
+        evolution(b).run(BIRTHS / 10, 0.0, 1, ForkJoinPool.commonPool());
+        for (int i = 0; i < AGENTS * SITUATIONS; i++)
+            assertEquals(a.weight(i), b.weight(i));
+    }
+
+    private static SteadyStateEvolution evolution(final AgentMatrix m)
+    {
+        return new SteadyStateEvolution(m, new InfiniteDeckFitness(1000), TOURNAMENT, MUTATION_RATE, SEED);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package test;
+
+import blackjack.HeadsUpBlackjack;
+import blackjack.RoundTally;
+import blackjack.TableBlackjack;
+import blackjack.player.Player;
+import genetic.agent.ConcreteAgent;
+import genetic.fitness.InfiniteDeckFitness;
+import genetic.fitness.TableFitness;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public final class TestTable
+{
+    private static final long SEED = 8815200377L;
+    private static final int BJ_SHOE_SIZE = 8;
+    private static final float BJ_SHOE_PEN = 0.35f;
+
+    @Test public void singleSeatMatchesHeadsUp()
+    {
+        final ConcreteAgent a = new ConcreteAgent(SEED), b = new ConcreteAgent(SEED);
+        a.randomizeWeights();
+        b.randomizeWeights(); // Identical weights & decision generators
+        final TableBlackjack table = new TableBlackjack(new Player[] { a }, BJ_SHOE_SIZE, SEED, BJ_SHOE_PEN);
+        final HeadsUpBlackjack headsUp = new HeadsUpBlackjack(b, BJ_SHOE_SIZE, SEED, BJ_SHOE_PEN);
+        for (int i = 0; i < 100000; i++)
+            assertEquals(headsUp.playRound(), table.playRound()[0]);
+    }
+
+    @Test public void sharedDealerDoesNotBiasSeats()
+    {
+        /* Seven clones of one deterministic policy: every seat should cost the same, and match its exact cost */
+        final int rounds = 7 * 100000;
+        final Player[] clones = new Player[TableBlackjack.MAXIMUM_SEATS];
+        for (int s = 0; s < clones.length; s++)
+            clones[s] = hitBelow(12, SEED + s);
+        final RoundTally[] tallies = new TableBlackjack(clones, BJ_SHOE_SIZE, SEED, BJ_SHOE_PEN).playRounds(rounds);
+        final double exact = InfiniteDeckFitness.expectedCost(((ConcreteAgent)clones[0]).getWeights());
+        for (final RoundTally t : tallies) // Standard error is ~0.001 per round, finite shoe effects are smaller
+            assertEquals(exact, t.cost() / rounds, 0.01);
+    }
+
+    @Test public void rankingsMatchExactCosts()
+    {
+        /* Mixed tables of a strong and a weak policy: the strong policy should rank first at nearly every table */
+        final int tables = 50;
+        final List<ConcreteAgent> agents = new ArrayList<>();
+        for (int t = 0; t < tables; t++)
+            for (int s = 0; s < 6; s++)
+                agents.add(s % 2 == 0 ? hitBelow(16, SEED + agents.size()) : hitBelow(12, SEED + agents.size()));
+        final double[] costs = new TableFitness(6, 6 * 5000, BJ_SHOE_SIZE, BJ_SHOE_PEN, SEED).evaluate(agents, 0);
+
+        final double strong = InfiniteDeckFitness.expectedCost(agents.get(0).getWeights());
+        final double weak = InfiniteDeckFitness.expectedCost(agents.get(1).getWeights());
+        assertTrue(strong < weak);
+        int correct = 0, comparisons = 0;
+        for (int t = 0; t < tables; t++)
+            for (int s = 0; s < 6; s += 2, comparisons++)
+                if (costs[6 * t + s] < costs[6 * t + s + 1]) correct++;
+        assertTrue(correct > 0.9 * comparisons);
+        final double strongMean = IntStream.range(0, costs.length).filter(i -> i % 2 == 0)
+                .mapToDouble(i -> costs[i]).average().getAsDouble() / (6 * 5000);
+        assertEquals(strong, strongMean, 0.01);
+    }
+
+    /* Deterministic policy which hits below the specified hard score, and stands otherwise */
+    private static ConcreteAgent hitBelow(final int score, final long seed)
+    {
+        final ConcreteAgent ca = new ConcreteAgent(seed);
+        for (int hard = 2; hard <= 20; hard++)
+            for (final boolean ace : new boolean[] { false, true })
+            {
+                final int i = ConcreteAgent.weightIndex(hard, ace);
+                if (i >= 0 && i < ConcreteAgent.SITUATIONS)
+                    ca.getWeights()[i] = (ace ? hard + 10 <= 21 ? hard + 10 : hard : hard) < score ? Integer.MAX_VALUE : 0;
+            }
+        return ca;
+    }
+}
@@ -20,11 +20,13 @@ package test;
 
 import blackjack.BJEventTranslator;
 import blackjack.Blackjack;
+import blackjack.HeadsUpBlackjack;
 import blackjack.player.Player;
 import blackjack.player.UserPlayer;
 import genetic.population.Population;
 import genetic.Simulation;
 import genetic.agent.ConcreteAgent;
+import genetic.fitness.SeedSequence;
 import genetic.gradient.BirdshotGradient;
 import genetic.gradient.Gradient;
 import io.AgentWeightFormatter;
@@ -48,9 +50,10 @@ public class TrainAndPlay
     private static final Gradient<ConcreteAgent> gradient =
             new BirdshotGradient<>(generator, GRADIENT_SCALAR);
 
-    /* Each Blackjack game needs its own seed, but could be on its own thread.
-     * 'Random' class is not synchronized, so protect it via synchronized method. */
-    private static synchronized long iterateSeed() {return generator.nextLong();}
+    /* Each Blackjack game needs its own seed, but could be on its own thread. Seeds are derived from the generation
+     * & the agent's index within the population, see SeedSequence, so costs do not depend on thread scheduling. */
+    private static volatile int evaluatedGenerations = 0;
+    private static long seedOf(final int index) { return SeedSequence.seed(SEED, evaluatedGenerations, index); }
 
     public static void main(final String[] args)
     {
@@ -59,16 +62,9 @@ public class TrainAndPlay
             @Override public double evaluateFitness(final ConcreteAgent agent)
             {
                 // Each Blackjack game needs a new seed, otherwise all agents will play the exact same hands & games
-                final Blackjack bj = new Blackjack(BJ_SHOE_SIZE, iterateSeed(), BJ_SHOE_PEN);
-                bj.dealIn(agent);
-                final Map<Player, Integer> m = bj.getResults();
-                double cost = 0.0;
-                for (int i = 0; i < BJ_ROUNDS_PER_AGENT; i++)
-                {
-                    bj.playRound();
-                    cost += 1.0 - m.get(agent); // shift scores into win: 0, push: 1, loss: 2
-                }
-                return cost;
+                final HeadsUpBlackjack bj = new HeadsUpBlackjack(agent, BJ_SHOE_SIZE,
+                        seedOf(getPopulation().indexOf(agent)), BJ_SHOE_PEN);
+                return bj.playRounds(BJ_ROUNDS_PER_AGENT).cost(); // shift scores into win: 0, push: 1, loss: 2
             }
 
             @Override public ConcreteAgent initAgent()
@@ -86,6 +82,7 @@ public class TrainAndPlay
                 System.out.format("Generation #%-4d   Average: %-10.3f   Best: %-10.3f   Worst: %-10.3f\n",
                         generation, dss.getAverage() / BJ_ROUNDS_PER_AGENT, dss.getMin() / BJ_ROUNDS_PER_AGENT,
                         dss.getMax() / BJ_ROUNDS_PER_AGENT);
+                evaluatedGenerations++; // Only called between generations
             }
         };
         sim.run(pop, GENERATION_TARGET, generator, gradient, true);
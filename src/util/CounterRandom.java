@@ -0,0 +1,96 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+/**
+ * Defines a counter-based generator: the n-th number is a pure function of (key, n)
+ *
+ * Any position of the sequence can be reached immediately via `setCounter`,
+ * therefore a single stream (ex. one agent's decisions) may be replayed in isolation
+ * from its key alone, without replaying anything generated before it.
+ */
+public class CounterRandom extends FastRandom
+{
+    private static final long serialVersionUID = 1L;
+
+    private long key, counter;
+
+    /**
+     * @param key Key of the sequence, ex. derived from a generation & agent index
+     */
+    public CounterRandom(final long key)
+    {
+        super(key);
+    }
+
+    @Override public long nextLong()
+    {
+        return mix64(key + GOLDEN_GAMMA * ++counter);
+    }
+
+    /**
+     * Re-keys the generator, restarting its sequence from the first number
+     *
+     * @param seed Key of the sequence
+     */
+    @Override public void setSeed(final long seed)
+    {
+        key = mix64(seed);
+        counter = 0;
+    }
+
+    @Override public long[] getState()
+    {
+        return new long[] { key, counter };
+    }
+
+    @Override public void setState(final long[] state)
+    {
+        if (state.length != 2)
+            throw new IllegalArgumentException("State is not that of a counter generator");
+        key = state[0];
+        counter = state[1];
+    }
+
+    /**
+     * @return Number of 64-bit values generated since the sequence began
+     */
+    public long getCounter()
+    {
+        return counter;
+    }
+
+    /**
+     * Moves to the specified position of the sequence
+     *
+     * @param counter Number of 64-bit values to be considered already generated
+     */
+    public void setCounter(final long counter)
+    {
+        this.counter = counter;
+    }
+
+    /**
+     * @return New generator, keyed by the next number of this sequence
+     */
+    @Override public CounterRandom split()
+    {
+        return new CounterRandom(nextLong());
+    }
+}
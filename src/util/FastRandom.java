@@ -0,0 +1,146 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+import java.util.Random;
+
+
+/**
+ * Defines a non-atomic, high-throughput random number generator
+ *
+ * java.util.Random performs an atomic compare-and-swap on every number generated.
+ * Subclasses instead keep plain state and generate 64 bits per step, and may be
+ * split into statistically independent generators for parallel streams.
+ * Being a Random, a FastRandom is usable wherever a Random is expected.
+ *
+ * Instances are not thread-safe, use one per thread or `split` one per task.
+ */
+public abstract class FastRandom extends Random
+{
+    private static final long serialVersionUID = 1L;
+
+    /* Golden ratio increment, as used by SplittableRandom */
+    protected static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /*
+     * Random's constructor calls `setSeed` before subclass fields are initialized.
+     * Therefore subclasses must not declare field initializers for their state.
+     */
+    protected FastRandom(final long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * @return Next 64 random bits of the sequence
+     */
+    @Override public abstract long nextLong();
+
+    /**
+     * Re-seeds the generator, deterministically deriving all of its state from the seed
+     *
+     * @param seed Random seed sequence
+     */
+    @Override public abstract void setSeed(final long seed);
+
+    /**
+     * Creates a new generator, statistically independent of this one
+     *
+     * Splitting is deterministic: the same sequence of splits yields the same generators.
+     *
+     * @return New generator
+     */
+    public abstract FastRandom split();
+
+    /**
+     * Captures the complete state of the generator, ex. to be checkpointed
+     *
+     * @return State of the generator
+     */
+    public abstract long[] getState();
+
+    /**
+     * Restores a state previously captured by `getState`
+     *
+     * @param state State of the generator
+     */
+    public abstract void setState(final long[] state);
+
+    @Override protected int next(final int bits)
+    {
+        return (int)(nextLong() >>> (Long.SIZE - bits));
+    }
+
+    @Override public int nextInt()
+    {
+        return (int)(nextLong() >>> Integer.SIZE);
+    }
+
+    /**
+     * Generates a uniform integer from [0, bound) via multiplication, avoiding division in most cases
+     *
+     * @param bound Exclusive upper bound
+     * @return Random integer from [0, bound)
+     */
+    @Override public int nextInt(final int bound)
+    {
+        if (bound <= 0) throw new IllegalArgumentException("bound must be positive");
+        long m = (nextLong() >>> Integer.SIZE) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound)
+        {
+            /* Reject the values which would make the result non-uniform: 2^32 mod bound */
+            final long threshold = (-bound & 0xFFFFFFFFL) % bound;
+            while (low < threshold)
+            {
+                m = (nextLong() >>> Integer.SIZE) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int)(m >>> Integer.SIZE);
+    }
+
+    @Override public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override public float nextFloat()
+    {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    @Override public boolean nextBoolean()
+    {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Scrambles all bits of the specified value (SplitMix64 finalizer)
+     *
+     * @param z Value to be scrambled
+     * @return Scrambled value
+     */
+    public static long mix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
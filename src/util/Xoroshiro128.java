@@ -0,0 +1,118 @@
+/*
+ *     Genetic algorithm which teaches agents how to play Blackjack.
+ *     Copyright (C) 2019-2023  Kevin Tyrrell
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+/**
+ * Defines a xoroshiro128++ generator: 128 bits of state, period 2^128 - 1
+ *
+ * Supports jumping 2^64 steps ahead, which splits the sequence into
+ * 2^64 non-overlapping streams for parallel use.
+ */
+public class Xoroshiro128 extends FastRandom
+{
+    private static final long serialVersionUID = 1L;
+
+    private long s0, s1;
+
+    /* Jump polynomial, equivalent to 2^64 calls to `nextLong` */
+    private static final long[] JUMP = { 0x2BD7A6A6E99C2DDCL, 0x0992CCAF6A6FCA05L };
+
+    /**
+     * @param seed Random seed sequence
+     */
+    public Xoroshiro128(final long seed)
+    {
+        super(seed);
+    }
+
+    private Xoroshiro128(final long s0, final long s1)
+    {
+        super(0);
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    @Override public long nextLong()
+    {
+        final long a = s0;
+        long b = s1;
+        final long result = Long.rotateLeft(a + b, 17) + a;
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+        return result;
+    }
+
+    /**
+     * State is expanded from the seed via SplitMix64, so similar seeds yield unrelated sequences
+     *
+     * @param seed Random seed sequence
+     */
+    @Override public void setSeed(final long seed)
+    {
+        s0 = mix64(seed + GOLDEN_GAMMA);
+        s1 = mix64(seed + 2 * GOLDEN_GAMMA);
+        if ((s0 | s1) == 0) s1 = GOLDEN_GAMMA; // The all-zero state is never left
+    }
+
+    @Override public long[] getState()
+    {
+        return new long[] { s0, s1 };
+    }
+
+    @Override public void setState(final long[] state)
+    {
+        if (state.length != 2 || (state[0] | state[1]) == 0)
+            throw new IllegalArgumentException("State is not that of a xoroshiro128 generator");
+        s0 = state[0];
+        s1 = state[1];
+    }
+
+    /**
+     * Advances the generator by 2^64 steps
+     */
+    public void jump()
+    {
+        long j0 = 0, j1 = 0;
+        for (final long jump : JUMP)
+            for (int b = 0; b < Long.SIZE; b++)
+            {
+                if ((jump & 1L << b) != 0)
+                {
+                    j0 ^= s0;
+                    j1 ^= s1;
+                }
+                nextLong();
+            }
+        s0 = j0;
+        s1 = j1;
+    }
+
+    /**
+     * The new generator continues this generator's sequence, while this generator jumps 2^64 steps ahead
+     *
+     * @return New generator, non-overlapping with this one for 2^64 steps
+     */
+    @Override public Xoroshiro128 split()
+    {
+        final Xoroshiro128 split = new Xoroshiro128(s0, s1);
+        jump();
+        return split;
+    }
+}